@@ -1,5 +1,13 @@
 package com.appleframework.id;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
@@ -8,6 +16,9 @@ import org.apache.log4j.Logger;
 import com.appleframework.id.codis.CodisResourcePool;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 
 
 /**
@@ -25,6 +36,29 @@ public class CodisIdGenerator extends SerialIdGenerator implements IdentityGener
 
 	private static Logger logger = Logger.getLogger(CodisIdGenerator.class);  
 
+	/**
+	 * Applies {@code INCRBY KEYS[i] ARGV[i]} to all keys, returns the new
+	 * values.
+	 */
+	private final static String SCRIPT_MULTI_INCRBY = "local r = {} for i, k in ipairs(KEYS) do r[i] = redis.call('INCRBY', k, ARGV[i]) end return r";
+
+	private final static String SCRIPT_MULTI_INCRBY_SHA = sha1Hex(SCRIPT_MULTI_INCRBY);
+
+	private static String sha1Hex(String script) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+					script.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(
+						Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	private CodisResourcePool codisResourcePool;
 	
     public static CodisIdGenerator getInstance(String zkAddr, String zkProxyDir) {
@@ -89,8 +123,112 @@ public class CodisIdGenerator extends SerialIdGenerator implements IdentityGener
      */
     @Override
     public long nextId(final String namespace) {
+    	return reserveIds(namespace, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public long reserveIds(final String namespace, final int count) {
+    	checkCount(count);
+    	try (Jedis jedis = codisResourcePool.getResource()) {
+    		return jedis.incrBy(namespace, count);
+    	}
+    }
+
+    /**
+     * Gets the hash tag of a key: the content of its first non-empty
+     * {@code {...}}, or the whole key. Keys with the same hash tag live in the
+     * same slot.
+     * 
+     * @param key
+     * @return
+     * @since 1.0.0
+     */
+    static String hashTag(String key) {
+    	int start = key.indexOf('{');
+    	if (start >= 0) {
+    		int end = key.indexOf('}', start + 1);
+    		if (end > start + 1) {
+    			return key.substring(start + 1, end);
+    		}
+    	}
+    	return key;
+    }
+
+    private static boolean sameHashTag(Iterable<String> keys) {
+    	String tag = null;
+    	for (String key : keys) {
+    		String keyTag = hashTag(key);
+    		if (tag == null) {
+    			tag = keyTag;
+    		} else if (!tag.equals(keyTag)) {
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * All namespaces are served in one round trip. If they share a hash tag
+     * (e.g. {@code {order}.main} and {@code {order}.item}), they live in the
+     * same slot and are increased atomically by a Lua script; otherwise by a
+     * pipeline of {@code INCRBY} commands.
+     * </p>
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+    	SortedMap<String, Integer> sorted = sortedCounts(counts);
     	try (Jedis jedis = codisResourcePool.getResource()) {
-    		return jedis.incr(namespace);
+    		List<Long> values = sameHashTag(sorted.keySet()) ? evalMultiIncBy(jedis, sorted)
+    				: pipelineMultiIncBy(jedis, sorted);
+    		Map<String, Long> result = new LinkedHashMap<String, Long>();
+    		int i = 0;
+    		for (String namespace : sorted.keySet()) {
+    			result.put(namespace, values.get(i++));
+    		}
+    		return result;
+    	}
+    }
+
+    private static List<Long> pipelineMultiIncBy(Jedis jedis, SortedMap<String, Integer> counts) {
+    	Pipeline p = jedis.pipelined();
+    	List<Response<Long>> responses = new ArrayList<Response<Long>>(counts.size());
+    	for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+    		responses.add(p.incrBy(entry.getKey(), entry.getValue().longValue()));
+    	}
+    	p.sync();
+    	List<Long> values = new ArrayList<Long>(counts.size());
+    	for (Response<Long> response : responses) {
+    		values.add(response.get());
+    	}
+    	return values;
+    }
+
+    /**
+     * Calls the script with {@code EVALSHA}. The proxy does not forward
+     * {@code SCRIPT LOAD}, so a backend that does not know the script yet gets
+     * it with {@code EVAL}, which also caches it there.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Long> evalMultiIncBy(Jedis jedis, SortedMap<String, Integer> counts) {
+    	List<String> keys = new ArrayList<String>(counts.keySet());
+    	List<String> args = new ArrayList<String>(counts.size());
+    	for (Integer count : counts.values()) {
+    		args.add(count.toString());
+    	}
+    	try {
+    		return (List<Long>) jedis.evalsha(SCRIPT_MULTI_INCRBY_SHA, keys, args);
+    	} catch (JedisNoScriptException e) {
+    		return (List<Long>) jedis.eval(SCRIPT_MULTI_INCRBY, keys, args);
     	}
     }
 
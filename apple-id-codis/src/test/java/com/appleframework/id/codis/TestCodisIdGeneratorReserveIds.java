@@ -0,0 +1,99 @@
+package com.appleframework.id.codis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+
+import com.appleframework.id.CodisIdGenerator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+/**
+ * Test case for {@link CodisIdGenerator#reserveIds(Map)}, against an embedded
+ * Redis server standing in for a Codis proxy.
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestCodisIdGeneratorReserveIds extends TestCase {
+
+    private final static int REDIS_PORT = 16379;
+    private RedisServer redisServer;
+    private CodisIdGenerator idGenerator;
+
+    public static Test suite() {
+        return new TestSuite(TestCodisIdGeneratorReserveIds.class);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        redisServer = RedisServer.builder().port(REDIS_PORT).setting("daemonize no")
+                .setting("save \"\"").build();
+        redisServer.start();
+        idGenerator = new CodisIdGenerator();
+        // connects to the embedded server instead of proxies found in Zookeeper
+        idGenerator.setCodisResourcePool(new CodisResourcePool() {
+            @Override
+            public void init() {
+            }
+
+            @Override
+            public void destroy() {
+            }
+
+            @Override
+            public Jedis getResource() {
+                return new Jedis("localhost", REDIS_PORT);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        idGenerator.destroy();
+        redisServer.stop();
+    }
+
+    @org.junit.Test
+    public void test1() throws Exception {
+        // different hash tags: pipeline
+        assertEquals(1, idGenerator.nextId("order"));
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("order_item", 3);
+        counts.put("order", 1);
+        counts.put("invoice", 2);
+        Map<String, Long> result = idGenerator.reserveIds(counts);
+        assertEquals(Arrays.asList("invoice", "order", "order_item"), new ArrayList<String>(
+                result.keySet()));
+        assertEquals(2, result.get("invoice").longValue());
+        assertEquals(2, result.get("order").longValue());
+        assertEquals(3, result.get("order_item").longValue());
+        assertEquals(3, idGenerator.currentId("order_item"));
+    }
+
+    @org.junit.Test
+    public void test2() throws Exception {
+        // same hash tag: script
+        assertEquals(1, idGenerator.nextId("{order}.main"));
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("{order}.main", 1);
+        counts.put("{order}.item", 3);
+        counts.put("{order}.a", 2);
+        for (int run = 1; run <= 2; run++) {
+            Map<String, Long> result = idGenerator.reserveIds(counts);
+            assertEquals(Arrays.asList("{order}.a", "{order}.item", "{order}.main"),
+                    new ArrayList<String>(result.keySet()));
+            assertEquals(2 * run, result.get("{order}.a").longValue());
+            assertEquals(3 * run, result.get("{order}.item").longValue());
+            assertEquals(1 + run, result.get("{order}.main").longValue());
+        }
+    }
+}
@@ -16,6 +16,31 @@ public interface IdentityGenerator {
      * @since 0.2.0
      */
 	public long nextId(final String namespace);
+
+	/**
+     * Generates a batch of ids. The default implementation calls
+     * {@link #nextId(String)} {@code count} times; generators override it to
+     * generate the batch in one operation.
+     * 
+     * @param namespace
+     * @param count
+     *            number of ids to generate, must be positive
+     * @return the generated ids, in ascending order; an empty array if error
+     * @since 1.0.0
+     */
+	public default long[] nextIds(final String namespace, final int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Count must be positive: " + count);
+		}
+		long[] result = new long[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = nextId(namespace);
+			if (result[i] < 0) {
+				return new long[0];
+			}
+		}
+		return result;
+	}
 	
 	/**
      * Gets current id.
@@ -0,0 +1,19 @@
+package com.appleframework.id;
+
+/**
+ * Resolves the id of the current node, for id generators that need a unique id
+ * per node (e.g. Snowflake).
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public interface NodeIdProvider {
+
+    /**
+     * Gets the id of the current node.
+     * 
+     * @return the node id, negative value if it cannot be resolved.
+     */
+    public long getNodeId();
+
+}
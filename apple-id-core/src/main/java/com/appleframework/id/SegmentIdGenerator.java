@@ -0,0 +1,484 @@
+package com.appleframework.id;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Generate serial IDs from ranges ("segments") reserved from a backing
+ * {@link SerialIdGenerator}.
+ *
+ * <p>
+ * Each namespace is double-buffered: once the current segment is
+ * {@link #getPrefetchThreshold()} consumed, the next segment is reserved in
+ * background, so callers do not wait for the backend in steady state.
+ * </p>
+ *
+ * <p>
+ * Optionally, segment size adapts per namespace (see
+ * {@link #setAdaptiveSegmentSize(int, int)}): it is recomputed from the
+ * observed consumption rate so that a segment lasts between
+ * {@link #getMinSegmentDuration()} and {@link #getMaxSegmentDuration()}. Hot
+ * namespaces get large segments and rarely hit the backend, cold namespaces
+ * only waste small ranges on restart.
+ * </p>
+ *
+ * <p>
+ * IDs generated by this id-generator are:
+ * </p>
+ * <ul>
+ * <li>Unique within the namespace, across all nodes sharing the backend.</li>
+ * <li>Ascending within a node.</li>
+ * <li>NOT serial across nodes: each node consumes its own segments, and
+ * unused ids of a segment are lost when the node stops.</li>
+ * </ul>
+ *
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class SegmentIdGenerator extends SerialIdGenerator implements IdentityGenerator {
+
+    public final static int DEFAULT_SEGMENT_SIZE = 1000;
+    public final static float DEFAULT_PREFETCH_THRESHOLD = 0.2f;
+    public final static int DEFAULT_PREFETCH_THREADS = 2;
+    public final static long DEFAULT_MIN_SEGMENT_DURATION = 10000; // 10 seconds
+    public final static long DEFAULT_MAX_SEGMENT_DURATION = 60000; // 60 seconds
+
+    /**
+     * Unique number of each backing id generator, compared by identity and
+     * held weakly, to key cached instances.
+     */
+    private final static AtomicLong delegateSequence = new AtomicLong();
+    private final static LoadingCache<SerialIdGenerator, Long> delegateIds = CacheBuilder
+            .newBuilder().weakKeys().build(new CacheLoader<SerialIdGenerator, Long>() {
+                @Override
+                public Long load(SerialIdGenerator idGenerator) {
+                    return delegateSequence.incrementAndGet();
+                }
+            });
+
+    /**
+     * Helper method to obtain {@link SegmentIdGenerator}.
+     *
+     * @param idGenerator
+     *            the backing id generator
+     * @param segmentSize
+     * @return
+     */
+    public static SegmentIdGenerator getInstance(final SerialIdGenerator idGenerator,
+            final int segmentSize) {
+        StringBuilder key = new StringBuilder();
+        key.append("segment|").append(delegateIds.getUnchecked(idGenerator)).append("|")
+                .append(segmentSize);
+        try {
+            SegmentIdGenerator idGen = (SegmentIdGenerator) idGenerators.get(key.toString(),
+                    new Callable<SerialIdGenerator>() {
+                        @Override
+                        public SerialIdGenerator call() throws Exception {
+                            SegmentIdGenerator idGen = new SegmentIdGenerator();
+                            idGen.setIdGenerator(idGenerator).setSegmentSize(segmentSize).init();
+                            return idGen;
+                        }
+                    });
+            return idGen;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A reserved range {@code [first, last]} of ids.
+     */
+    private static class Segment {
+        private final long last, prefetchAt;
+        private final AtomicLong value;
+        private final AtomicBoolean prefetched = new AtomicBoolean(false);
+        private volatile boolean retired = false;
+
+        private Segment(long last, int size, float prefetchThreshold) {
+            long first = last - size + 1;
+            this.last = last;
+            this.prefetchAt = first + (long) (size * prefetchThreshold);
+            this.value = new AtomicLong(first - 1);
+        }
+    }
+
+    /**
+     * Current segment and the (possibly in-flight) next segment of a
+     * namespace.
+     */
+    private static class SegmentBuffer {
+        private volatile Segment current;
+        private Future<Segment> next;
+        private volatile int size;
+        private volatile long lastReservedAt;
+
+        private SegmentBuffer(int size) {
+            this.size = size;
+        }
+    }
+
+    private SerialIdGenerator idGenerator;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private float prefetchThreshold = DEFAULT_PREFETCH_THRESHOLD;
+    private int prefetchThreads = DEFAULT_PREFETCH_THREADS;
+    private boolean adaptive = false;
+    private int minSegmentSize = DEFAULT_SEGMENT_SIZE, maxSegmentSize = DEFAULT_SEGMENT_SIZE;
+    private long minSegmentDuration = DEFAULT_MIN_SEGMENT_DURATION;
+    private long maxSegmentDuration = DEFAULT_MAX_SEGMENT_DURATION;
+    private ExecutorService executor;
+    private final ConcurrentMap<String, SegmentBuffer> buffers = new ConcurrentHashMap<String, SegmentBuffer>();
+
+    public SerialIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public SegmentIdGenerator setIdGenerator(SerialIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        return this;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public SegmentIdGenerator setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+        if (this.segmentSize < 1) {
+            this.segmentSize = 1;
+        }
+        return this;
+    }
+
+    public float getPrefetchThreshold() {
+        return prefetchThreshold;
+    }
+
+    /**
+     * Sets the consumed fraction of a segment after which the next segment is
+     * reserved in background.
+     *
+     * @param prefetchThreshold
+     *            value in {@code [0, 1]}
+     * @return
+     */
+    public SegmentIdGenerator setPrefetchThreshold(float prefetchThreshold) {
+        this.prefetchThreshold = Math.max(0f, Math.min(1f, prefetchThreshold));
+        return this;
+    }
+
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public SegmentIdGenerator setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+        if (this.prefetchThreads < 1) {
+            this.prefetchThreads = 1;
+        }
+        return this;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getMinSegmentSize() {
+        return minSegmentSize;
+    }
+
+    public int getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    /**
+     * Enables adaptive segment size: each namespace starts with segments of
+     * {@code minSegmentSize} ids, then its segment size follows the
+     * consumption rate within {@code [minSegmentSize, maxSegmentSize]}.
+     *
+     * @param minSegmentSize
+     * @param maxSegmentSize
+     * @return
+     */
+    public SegmentIdGenerator setAdaptiveSegmentSize(int minSegmentSize, int maxSegmentSize) {
+        this.minSegmentSize = Math.max(1, minSegmentSize);
+        this.maxSegmentSize = Math.max(this.minSegmentSize, maxSegmentSize);
+        this.adaptive = true;
+        return this;
+    }
+
+    public long getMinSegmentDuration() {
+        return minSegmentDuration;
+    }
+
+    public long getMaxSegmentDuration() {
+        return maxSegmentDuration;
+    }
+
+    /**
+     * Sets the interval (in milliseconds) a segment should last when segment
+     * size is adaptive.
+     *
+     * @param minSegmentDuration
+     * @param maxSegmentDuration
+     * @return
+     */
+    public SegmentIdGenerator setSegmentDuration(long minSegmentDuration,
+            long maxSegmentDuration) {
+        this.minSegmentDuration = Math.max(1, minSegmentDuration);
+        this.maxSegmentDuration = Math.max(this.minSegmentDuration, maxSegmentDuration);
+        return this;
+    }
+
+    /**
+     * Gets the size of the next segment to be reserved for a namespace.
+     *
+     * @param namespace
+     * @return
+     */
+    public int getSegmentSize(final String namespace) {
+        SegmentBuffer buffer = buffers.get(namespace);
+        return buffer != null ? buffer.size : (adaptive ? minSegmentSize : segmentSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SegmentIdGenerator init() {
+        super.init();
+        executor = Executors.newFixedThreadPool(prefetchThreads, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("segment-id-prefetch-%d").build());
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The backing id generator is not destroyed.
+     * </p>
+     */
+    @Override
+    public void destroy() {
+        try {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        } finally {
+            executor = null;
+            buffers.clear();
+        }
+        super.destroy();
+    }
+
+    private SegmentBuffer buffer(final String namespace) {
+        SegmentBuffer buffer = buffers.get(namespace);
+        if (buffer == null) {
+            SegmentBuffer newBuffer = new SegmentBuffer(adaptive ? minSegmentSize : segmentSize);
+            buffer = buffers.putIfAbsent(namespace, newBuffer);
+            if (buffer == null) {
+                buffer = newBuffer;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Calculates the size of the next segment of a namespace from the time
+     * its previous segment has lasted.
+     *
+     * @param buffer
+     * @return
+     */
+    private int nextSegmentSize(final SegmentBuffer buffer) {
+        long now = System.currentTimeMillis();
+        int size = buffer.size;
+        if (adaptive) {
+            long lastReservedAt = buffer.lastReservedAt;
+            if (lastReservedAt > 0) {
+                long elapsed = Math.max(1, now - lastReservedAt);
+                if (elapsed < minSegmentDuration || elapsed > maxSegmentDuration) {
+                    // rate = size / elapsed, aim at the middle of the target interval
+                    long target = (minSegmentDuration + maxSegmentDuration) / 2;
+                    double newSize = (double) size * target / elapsed;
+                    size = (int) Math.max(minSegmentSize, Math.min(maxSegmentSize, newSize));
+                }
+            }
+            buffer.size = size;
+        }
+        buffer.lastReservedAt = now;
+        return size;
+    }
+
+    /**
+     * Reserves a new segment from the backing id generator.
+     *
+     * @param namespace
+     * @param buffer
+     * @return the reserved segment, {@code null} if error
+     */
+    private Segment reserve(final String namespace, final SegmentBuffer buffer) {
+        int size = nextSegmentSize(buffer);
+        long last = idGenerator.reserveIds(namespace, size);
+        return last < 0 ? null : new Segment(last, size, prefetchThreshold);
+    }
+
+    private void prefetch(final String namespace, final SegmentBuffer buffer) {
+        synchronized (buffer) {
+            if (buffer.next == null && executor != null) {
+                buffer.next = executor.submit(new Callable<Segment>() {
+                    @Override
+                    public Segment call() throws Exception {
+                        return reserve(namespace, buffer);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Takes the prefetched segment of a buffer, waiting for it if still
+     * in-flight. Must be called while holding the buffer's lock.
+     *
+     * @param buffer
+     * @return the prefetched segment, {@code null} if none or prefetching
+     *         failed
+     */
+    private static Segment takeNext(final SegmentBuffer buffer) {
+        Future<Segment> next = buffer.next;
+        buffer.next = null;
+        if (next != null) {
+            try {
+                return next.get();
+            } catch (ExecutionException e) {
+                // fall back to a synchronous reservation
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextId(final String namespace) {
+        SegmentBuffer buffer = buffer(namespace);
+        for (;;) {
+            Segment segment = buffer.current;
+            if (segment != null) {
+                long id = segment.value.incrementAndGet();
+                if (id <= segment.last && !segment.retired) {
+                    if (id >= segment.prefetchAt && segment.prefetched.compareAndSet(false, true)) {
+                        prefetch(namespace, buffer);
+                    }
+                    return id;
+                }
+            }
+            synchronized (buffer) {
+                if (buffer.current != segment) {
+                    // another thread has switched segment
+                    continue;
+                }
+                Segment next = takeNext(buffer);
+                if (next == null) {
+                    next = reserve(namespace, buffer);
+                    if (next == null) {
+                        return -1;
+                    }
+                }
+                buffer.current = next;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Ranges are reserved directly from the backing id generator, bypassing
+     * the local segments.
+     * </p>
+     */
+    @Override
+    public long reserveIds(final String namespace, final int count) {
+        checkCount(count);
+        return idGenerator.reserveIds(namespace, count);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Ranges are reserved directly from the backing id generator, bypassing
+     * the local segments.
+     * </p>
+     */
+    @Override
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+        return idGenerator.reserveIds(counts);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Returns the last id handed out by this node, or the backend's current id
+     * if the namespace has not been used on this node.
+     * </p>
+     */
+    @Override
+    public long currentId(final String namespace) {
+        SegmentBuffer buffer = buffers.get(namespace);
+        Segment segment = buffer != null ? buffer.current : null;
+        if (segment != null) {
+            return Math.min(segment.value.get(), segment.last);
+        }
+        return idGenerator.currentId(namespace);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Segments of this node are retired, under the same lock that switches
+     * segments, so calls to {@link #nextId(String)} starting after this method
+     * returns get no id of the old range. Calls running concurrently with it
+     * may still return one, since ids are handed out without the lock.
+     * Segments already held by other nodes are not affected.
+     * </p>
+     */
+    @Override
+    public boolean setValue(final String namespace, final long value) {
+        SegmentBuffer buffer = buffers.get(namespace);
+        if (buffer == null) {
+            return idGenerator.setValue(namespace, value);
+        }
+        synchronized (buffer) {
+            Segment segment = buffer.current;
+            if (segment != null) {
+                segment.retired = true;
+                buffer.current = null;
+            }
+            if (buffer.next != null) {
+                buffer.next.cancel(false);
+                buffer.next = null;
+            }
+            return idGenerator.setValue(namespace, value);
+        }
+    }
+}
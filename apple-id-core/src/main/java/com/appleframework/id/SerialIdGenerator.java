@@ -1,5 +1,10 @@
 package com.appleframework.id;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.cache.Cache;
@@ -42,6 +47,37 @@ public abstract class SerialIdGenerator {
         idGenerators.invalidateAll();
     }
 
+    /**
+     * Validates the number of ids requested by a bulk operation.
+     * 
+     * @param count
+     * @since 1.0.0
+     */
+    protected static void checkCount(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive: " + count);
+        }
+    }
+
+    /**
+     * Validates the counts requested by a multi-namespace bulk operation, and
+     * sorts them by namespace.
+     * 
+     * @param counts
+     * @return
+     * @since 1.0.0
+     */
+    protected static SortedMap<String, Integer> sortedCounts(final Map<String, Integer> counts) {
+        if (counts == null || counts.isEmpty()) {
+            throw new IllegalArgumentException("No namespace requested");
+        }
+        SortedMap<String, Integer> result = new TreeMap<String, Integer>(counts);
+        for (Integer count : result.values()) {
+            checkCount(count != null ? count.intValue() : 0);
+        }
+        return result;
+    }
+
     public SerialIdGenerator init() {
         return this;
     }
@@ -58,6 +94,72 @@ public abstract class SerialIdGenerator {
      */
     public abstract long nextId(final String namespace);
 
+    /**
+     * Reserves a contiguous range of {@code count} ids with a single backend
+     * operation.
+     * 
+     * <p>
+     * The reserved range is {@code [result - count + 1, result]}.
+     * </p>
+     * 
+     * @param namespace
+     * @param count
+     *            number of ids to reserve, must be positive
+     * @return the last id of the reserved range, negative value if error.
+     * @since 1.0.0
+     */
+    public abstract long reserveIds(final String namespace, final int count);
+
+    /**
+     * Reserves contiguous ranges of ids in several namespaces at once.
+     * 
+     * <p>
+     * Namespaces are served in ascending order (so that concurrent callers
+     * lock them in the same order). This implementation calls
+     * {@link #reserveIds(String, int)} for each namespace; backends override
+     * it to serve all namespaces in a single round trip.
+     * </p>
+     * 
+     * @param counts
+     *            number of ids to reserve per namespace, must be positive
+     * @return the last id of the range reserved for each namespace, in
+     *         ascending namespace order; an empty map if error.
+     * @since 1.0.0
+     */
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Integer> entry : sortedCounts(counts).entrySet()) {
+            long last = reserveIds(entry.getKey(), entry.getValue().intValue());
+            if (last < 0) {
+                return Collections.emptyMap();
+            }
+            result.put(entry.getKey(), last);
+        }
+        return result;
+    }
+
+    /**
+     * Generates a batch of ids, backed by {@link #reserveIds(String, int)}.
+     * 
+     * @param namespace
+     * @param count
+     * @return the generated ids in ascending order, an empty array if error.
+     * @since 1.0.0
+     */
+    public long[] nextIds(final String namespace, final int count) {
+        checkCount(count);
+        long last = reserveIds(namespace, count);
+        if (last < 0) {
+            return new long[0];
+        }
+        long[] result = new long[count];
+        long first = last - count + 1;
+        for (int i = 0; i < count; i++) {
+            result[i] = first + i;
+        }
+        return result;
+    }
+
     /**
      * Gets current id.
      * 
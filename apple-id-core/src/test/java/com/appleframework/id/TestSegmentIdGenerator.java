@@ -0,0 +1,237 @@
+package com.appleframework.id;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Test case for {@link SegmentIdGenerator}
+ *
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestSegmentIdGenerator extends TestCase {
+
+    /**
+     * In-memory backend that counts the reservations it serves.
+     */
+    private static class MemoryIdGenerator extends SerialIdGenerator {
+        private final ConcurrentMap<String, AtomicLong> values = new ConcurrentHashMap<String, AtomicLong>();
+        private final AtomicInteger numReservations = new AtomicInteger();
+
+        private AtomicLong value(String namespace) {
+            AtomicLong value = values.get(namespace);
+            if (value == null) {
+                values.putIfAbsent(namespace, new AtomicLong());
+                value = values.get(namespace);
+            }
+            return value;
+        }
+
+        @Override
+        public long nextId(String namespace) {
+            return reserveIds(namespace, 1);
+        }
+
+        @Override
+        public long reserveIds(String namespace, int count) {
+            numReservations.incrementAndGet();
+            return value(namespace).addAndGet(count);
+        }
+
+        @Override
+        public long currentId(String namespace) {
+            return value(namespace).get();
+        }
+
+        @Override
+        public boolean setValue(String namespace, long value) {
+            value(namespace).set(value);
+            return true;
+        }
+    }
+
+    private MemoryIdGenerator backend;
+    private SegmentIdGenerator idGenerator;
+
+    public static Test suite() {
+        return new TestSuite(TestSegmentIdGenerator.class);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        backend = new MemoryIdGenerator();
+        idGenerator = new SegmentIdGenerator();
+        idGenerator.setIdGenerator(backend).setSegmentSize(100).init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        idGenerator.destroy();
+    }
+
+    @org.junit.Test
+    public void test1() throws Exception {
+        for (int i = 1; i <= 250; i++) {
+            assertEquals(i, idGenerator.nextId("default"));
+        }
+        assertEquals(250, idGenerator.currentId("default"));
+        assertTrue(backend.numReservations.get() <= 4);
+    }
+
+    @org.junit.Test
+    public void test2() throws Exception {
+        assertEquals(1, idGenerator.nextId("default"));
+        assertTrue(idGenerator.setValue("default", 1000));
+        assertEquals(1001, idGenerator.nextId("default"));
+    }
+
+    @org.junit.Test
+    public void test3() throws Exception {
+        final int numThreads = 8, numRuns = 10000;
+        final Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < numRuns; i++) {
+                            long id = idGenerator.nextId("default");
+                            ids.put(id, id);
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(numThreads * numRuns, ids.size());
+    }
+
+    @org.junit.Test
+    public void test4() throws Exception {
+        idGenerator.setAdaptiveSegmentSize(10, 10000).setSegmentDuration(10000, 60000);
+        assertEquals(10, idGenerator.getSegmentSize("hot"));
+        long last = 0;
+        for (int i = 0; i < 5000; i++) {
+            long id = idGenerator.nextId("hot");
+            assertTrue(id > last);
+            last = id;
+        }
+        // segments consumed within milliseconds must grow
+        assertTrue(idGenerator.getSegmentSize("hot") > 10);
+        assertTrue(idGenerator.getSegmentSize("hot") <= 10000);
+        assertEquals(10, idGenerator.getSegmentSize("cold"));
+    }
+
+    @org.junit.Test
+    public void test5() throws Exception {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("order_item", 3);
+        counts.put("order", 1);
+        Map<String, Long> result = idGenerator.reserveIds(counts);
+        assertEquals(Arrays.asList("order", "order_item"),
+                new ArrayList<String>(result.keySet()));
+        assertEquals(1, result.get("order").longValue());
+        assertEquals(3, result.get("order_item").longValue());
+        assertEquals(4, idGenerator.reserveIds("order_item", 1));
+    }
+
+    @org.junit.Test
+    public void test6() throws Exception {
+        final AtomicLong value = new AtomicLong();
+        IdentityGenerator idGen = new IdentityGenerator() {
+            @Override
+            public long nextId(String namespace) {
+                return value.incrementAndGet();
+            }
+
+            @Override
+            public long currentId(String namespace) {
+                return value.get();
+            }
+
+            @Override
+            public boolean setValue(String namespace, long v) {
+                value.set(v);
+                return true;
+            }
+        };
+        assertTrue(Arrays.equals(new long[] { 1, 2, 3 }, idGen.nextIds("default", 3)));
+        value.set(-10);
+        assertEquals(0, idGen.nextIds("default", 3).length);
+    }
+
+    @org.junit.Test
+    public void test7() throws Exception {
+        MemoryIdGenerator failing = new MemoryIdGenerator() {
+            @Override
+            public long reserveIds(String namespace, int count) {
+                return namespace.equals("broken") ? -1 : super.reserveIds(namespace, count);
+            }
+        };
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("order", 1);
+        counts.put("broken", 1);
+        assertTrue(failing.reserveIds(counts).isEmpty());
+    }
+
+    @org.junit.Test
+    public void test8() throws Exception {
+        MemoryIdGenerator other = new MemoryIdGenerator();
+        SegmentIdGenerator idGen1 = SegmentIdGenerator.getInstance(backend, 100);
+        SegmentIdGenerator idGen2 = SegmentIdGenerator.getInstance(other, 100);
+        assertSame(idGen1, SegmentIdGenerator.getInstance(backend, 100));
+        assertNotSame(idGen1, idGen2);
+        assertSame(backend, idGen1.getIdGenerator());
+        assertSame(other, idGen2.getIdGenerator());
+    }
+
+    @org.junit.Test
+    public void test9() throws Exception {
+        final int numThreads = 8;
+        final long resetValue = 1000000;
+        final AtomicBoolean reset = new AtomicBoolean(false);
+        final AtomicInteger violations = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            boolean after = reset.get();
+                            long id = idGenerator.nextId("default");
+                            if (after && id <= resetValue) {
+                                violations.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        Thread.sleep(5);
+        assertTrue(idGenerator.setValue("default", resetValue));
+        reset.set(true);
+        latch.await();
+        assertEquals(0, violations.get());
+    }
+}
@@ -1,21 +1,33 @@
 package com.appleframework.id;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import javax.sql.DataSource;
 
 import org.apache.commons.dbcp2.BasicDataSource;
-import org.springframework.dao.DeadlockLoserDataAccessException;
-import org.springframework.dao.DuplicateKeyException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 
 import com.appleframework.id.exception.IdException;
+import com.appleframework.id.jdbc.DeadlockRetryPolicy;
+import com.appleframework.id.jdbc.JdbcDialect;
 
 /**
  * This id generator utilizes JDBC to generate serial IDs.
@@ -25,6 +37,34 @@ import com.appleframework.id.exception.IdException;
  * database backend runs in persistent mode).
  * </p>
  * 
+ * <p>
+ * SQL is database-specific (see {@link JdbcDialect}): MySQL and PostgreSQL
+ * increase the counter and return its new value in a single statement. The
+ * dialect is detected from the database unless set with
+ * {@link #setDialect(JdbcDialect)}.
+ * </p>
+ * 
+ * <p>
+ * Hot namespaces can be striped over several rows, see
+ * {@link #setStripes(String, int)}.
+ * </p>
+ * 
+ * <p>
+ * Statements are run with plain JDBC and prepared on every call: this
+ * generator does not cache statements itself. They are prepared once per
+ * connection only if the {@link DataSource} pools prepared statements.
+ * {@link #getInstance(String, String, String, String, String)} enables this
+ * on the {@code BasicDataSource} it creates; a {@link DataSource} passed to
+ * {@link #setDataSource(DataSource)} must be configured by the caller (e.g.
+ * {@code BasicDataSource.setPoolPreparedStatements(true)}), otherwise every
+ * call prepares its statements again.
+ * </p>
+ * 
+ * <p>
+ * Statements losing a deadlock are retried after a randomized, exponentially
+ * growing delay, see {@link #setRetryPolicy(DeadlockRetryPolicy)}.
+ * </p>
+ * 
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 0.3.0
  */
@@ -57,6 +97,8 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
                             ds.setUrl(jdbcUrl);
                             ds.setUsername(jdbcUser);
                             ds.setPassword(jdbcPassword);
+                            // statements are prepared once per pooled connection
+                            ds.setPoolPreparedStatements(true);
                             JdbcIdGenerator idGen = new JdbcIdGenerator();
                             idGen.setTableName(jdbcTableName).setDataSource(ds).init();
                             return idGen;
@@ -70,9 +112,67 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
 
     private DataSource dataSource;
     private String tableName;
-    private String sqlInsert, sqlUpdate, sqlSelect, sqlUpdateSet;
+    private String sqlSelect, sqlUpdateSet, sqlUpdateAdd, sqlSelectIn;
     private String colName = "id_name";
     private String colValue = "id_value";
+    private volatile JdbcDialect dialect;
+    private DeadlockRetryPolicy retryPolicy = new DeadlockRetryPolicy();
+    private final ConcurrentMap<String, Stripes> stripes = new ConcurrentHashMap<String, Stripes>();
+
+    /**
+     * Suffix of the row recording the number of stripes of a namespace.
+     */
+    private final static String STRIPES_ROW_SUFFIX = "#stripes";
+
+    /**
+     * Marks namespaces known not to be striped.
+     */
+    private final static Stripes NOT_STRIPED = new Stripes("", 1);
+
+    /**
+     * Rows backing a striped namespace, with the number of in-flight
+     * allocations on each.
+     */
+    private static class Stripes {
+        private final String[] rows;
+        private final AtomicIntegerArray inFlight;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Stripes(String namespace, int count) {
+            rows = new String[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = namespace + "#" + i;
+            }
+            inFlight = new AtomicIntegerArray(count);
+        }
+
+        /**
+         * Picks the stripe with the fewest in-flight allocations, starting
+         * from a rotating position to spread ties.
+         */
+        private int acquire() {
+            int count = rows.length;
+            int start = (next.getAndIncrement() & Integer.MAX_VALUE) % count;
+            int best = start, bestLoad = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int stripe = (start + i) % count;
+                int load = inFlight.get(stripe);
+                if (load < bestLoad) {
+                    best = stripe;
+                    bestLoad = load;
+                    if (load == 0) {
+                        break;
+                    }
+                }
+            }
+            inFlight.incrementAndGet(best);
+            return best;
+        }
+
+        private void release(int stripe) {
+            inFlight.decrementAndGet(stripe);
+        }
+    }
 
     public DataSource getDataSource() {
         return dataSource;
@@ -92,12 +192,253 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
         return this;
     }
 
-    private Connection connection() throws SQLException {
-        return dataSource.getConnection();
+    /**
+     * Gets the number of rows backing a namespace.
+     * 
+     * @param namespace
+     * @return
+     * @since 1.0.0
+     */
+    public int getStripes(String namespace) {
+        Stripes result = stripes(namespace);
+        return result != null ? result.rows.length : 1;
+    }
+
+    /**
+     * Stripes a namespace over {@code count} rows ({@code namespace#0} ..
+     * {@code namespace#(count-1)}), so that concurrent allocations lock
+     * different rows. Must be called after {@link #init()}.
+     * 
+     * <p>
+     * Row {@code i} owns the ids {@code i+1, count+i+1, 2*count+i+1, ...}: its
+     * counter holds how many of them have been issued. Ids stay unique, but
+     * are only roughly ordered.
+     * </p>
+     * 
+     * <p>
+     * The stripe count is stored in the database (row
+     * {@code namespace#stripes}), and the first node to stripe a namespace
+     * seeds each stripe from the ids already issued by the namespace's row.
+     * Other nodes pick the stripe count up on first use of the namespace;
+     * a node that used the namespace before it was striped keeps using its
+     * single row until restarted, so stripe namespaces before they are in
+     * service. The stripe count cannot change once stored.
+     * </p>
+     * 
+     * @param namespace
+     * @param count
+     *            number of rows, {@code 1} for no striping
+     * @return
+     * @throws IdException.OperationFailedException
+     *             if the namespace is already striped over a different number
+     *             of rows
+     * @since 1.0.0
+     */
+    public JdbcIdGenerator setStripes(String namespace, int count) {
+        checkCount(count);
+        int installed;
+        try {
+            Connection conn = connection();
+            if (conn == null) {
+                throw new IdException.OperationFailedException("Cannot connect to database");
+            }
+            try {
+                installed = _installStripes(conn, namespace, count);
+            } finally {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            throw new IdException.OperationFailedException(e);
+        }
+        if (installed != count) {
+            throw new IdException.OperationFailedException("Namespace [" + namespace
+                    + "] is striped over " + installed + " rows, not " + count);
+        }
+        stripes.put(namespace, count == 1 ? NOT_STRIPED : new Stripes(namespace, count));
+        return this;
+    }
+
+    /**
+     * Gets the stripes of a namespace, reading its stripe count from the
+     * database on first use.
+     * 
+     * @param namespace
+     * @return {@code null} if the namespace is not striped
+     */
+    private Stripes stripes(final String namespace) {
+        Stripes result = stripes.get(namespace);
+        if (result == null) {
+            long count = _currentValue(namespace + STRIPES_ROW_SUFFIX);
+            if (count < 0) {
+                return null;
+            }
+            result = count > 1 ? new Stripes(namespace, (int) count) : NOT_STRIPED;
+            Stripes existing = stripes.putIfAbsent(namespace, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result != NOT_STRIPED ? result : null;
+    }
+
+    /**
+     * Counter of stripe {@code stripe} (of {@code numStripes}) such that its
+     * last issued id is the greatest one not greater than {@code value}.
+     */
+    private static long stripeCounter(final long value, final int stripe, final int numStripes) {
+        // (c-1)*K+i+1 <= value
+        return Math.max(0, Math.floorDiv(value - stripe - 1, numStripes) + 1);
+    }
+
+    /**
+     * Stores the stripe count of a namespace, unless already stored, and
+     * seeds the stripes from the namespace's row, in one transaction.
+     * 
+     * @return the stored stripe count
+     */
+    private int _installStripes(final Connection conn, final String namespace, final int count)
+            throws SQLException {
+        String row = namespace + STRIPES_ROW_SUFFIX;
+        conn.setAutoCommit(true);
+        long installed = _select(conn, row);
+        if (installed > 0 || count == 1) {
+            return installed > 1 ? (int) installed : 1;
+        }
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return _installStripesOnce(conn, namespace, count);
+            } catch (SQLException e) {
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
+            }
+        }
     }
 
-    private JdbcTemplate jdbcTemplate(Connection conn) {
-        return new JdbcTemplate(new SingleConnectionDataSource(conn, true));
+    /**
+     * Runs the transaction of {@link #_installStripes(Connection, String, int)}.
+     * A deadlock rolls back the whole transaction, so its statements are not
+     * retried one by one: the caller retries the transaction.
+     */
+    private int _installStripesOnce(final Connection conn, final String namespace,
+            final int count) throws SQLException {
+        String row = namespace + STRIPES_ROW_SUFFIX;
+        JdbcDialect dialect = dialect(conn);
+        conn.setAutoCommit(false);
+        try {
+            try {
+                dialect.insert(conn, row);
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                // stored concurrently by another node
+                conn.rollback();
+                conn.setAutoCommit(true);
+                return (int) Math.max(1, _select(conn, row));
+            }
+            // lock the namespace's row while its value is copied
+            long value = _lockAndSelect(conn, namespace);
+            value = value != JdbcDialect.NO_ROW ? value : 0;
+            for (int i = 0; i < count; i++) {
+                String stripeRow = namespace + "#" + i;
+                long current = _lockAndSelect(conn, stripeRow);
+                if (current == JdbcDialect.NO_ROW) {
+                    dialect.insert(conn, stripeRow);
+                    current = 0;
+                }
+                long counter = stripeCounter(value, i, count);
+                if (counter > current) {
+                    _updateSetOnce(conn, stripeRow, counter);
+                }
+            }
+            _updateSetOnce(conn, row, count);
+            conn.commit();
+            return count;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Locks a row within the current transaction and reads its value.
+     * 
+     * @return the value, or {@link JdbcDialect#NO_ROW} if the row does not
+     *         exist
+     */
+    private long _lockAndSelect(final Connection conn, final String row) throws SQLException {
+        PreparedStatement stm = conn.prepareStatement(sqlUpdateAdd);
+        try {
+            stm.setLong(1, 0);
+            stm.setString(2, row);
+            if (stm.executeUpdate() < 1) {
+                return JdbcDialect.NO_ROW;
+            }
+        } finally {
+            stm.close();
+        }
+        return _selectOnce(conn, row);
+    }
+
+    /**
+     * Gets the policy retrying statements that lost a deadlock; also exposes
+     * retry metrics.
+     * 
+     * @return
+     * @since 1.0.0
+     */
+    public DeadlockRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public JdbcIdGenerator setRetryPolicy(DeadlockRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public JdbcDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Sets the SQL dialect (before {@link #init()}); detected from the database
+     * if not set.
+     * 
+     * @param dialect
+     * @return
+     * @since 1.0.0
+     */
+    public JdbcIdGenerator setDialect(JdbcDialect dialect) {
+        this.dialect = dialect;
+        return this;
+    }
+
+    private JdbcDialect dialect(Connection conn) throws SQLException {
+        JdbcDialect result = dialect;
+        if (result == null) {
+            synchronized (this) {
+                result = dialect;
+                if (result == null) {
+                    result = JdbcDialect.detect(conn).init(tableName, colName, colValue);
+                    dialect = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLIntegrityConstraintViolationException
+                || (sqlState != null && sqlState.startsWith("23"));
+    }
+
+    private Connection connection() throws SQLException {
+        return dataSource.getConnection();
     }
 
     /**
@@ -107,14 +448,17 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
     public JdbcIdGenerator init() {
         super.init();
 
-        sqlInsert = MessageFormat.format("INSERT INTO {0} ({1}, {2}) VALUES (?, 0)", tableName,
-                colName, colValue);
-        sqlUpdate = MessageFormat.format("UPDATE {0} SET {2}={2}+1 WHERE {1}=?", tableName,
-                colName, colValue);
+        if (dialect != null) {
+            dialect.init(tableName, colName, colValue);
+        }
         sqlUpdateSet = MessageFormat.format("UPDATE {0} SET {2}=? WHERE {1}=?", tableName, colName,
                 colValue);
         sqlSelect = MessageFormat.format("SELECT {2} FROM {0} WHERE {1}=?", tableName, colName,
                 colValue);
+        sqlUpdateAdd = MessageFormat.format("UPDATE {0} SET {2}={2}+? WHERE {1}=?", tableName,
+                colName, colValue);
+        sqlSelectIn = MessageFormat.format("SELECT {1}, {2} FROM {0} WHERE {1} IN (", tableName,
+                colName, colValue);
 
         return this;
     }
@@ -127,146 +471,478 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
         super.destroy();
     }
 
-    private boolean _update(final JdbcTemplate jdbcTemplate, final String namespace,
-            final int numRetries, final int maxRetries) {
-        try {
-            int status = jdbcTemplate.update(sqlUpdate, namespace);
-            return status > 0;
-        } catch (DeadlockLoserDataAccessException dle) {
-            if (numRetries > maxRetries) {
-                throw dle;
-            } else {
-                return _update(jdbcTemplate, namespace, numRetries + 1, maxRetries);
+    /**
+     * Sets a row, retrying on deadlock. Auto-commit only: within a
+     * transaction, use {@link #_updateSetOnce(Connection, String, long)}.
+     * 
+     * @since 0.4.0
+     */
+    private boolean _updateSet(final Connection conn, final String namespace, final long value)
+            throws SQLException {
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return _updateSetOnce(conn, namespace, value);
+            } catch (SQLException e) {
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
             }
         }
     }
 
+    private boolean _updateSetOnce(final Connection conn, final String namespace,
+            final long value) throws SQLException {
+        PreparedStatement stm = conn.prepareStatement(sqlUpdateSet);
+        try {
+            stm.setLong(1, value);
+            stm.setString(2, namespace);
+            return stm.executeUpdate() > 0;
+        } finally {
+            stm.close();
+        }
+    }
+
     /**
-     * @since 0.4.0
+     * Reads a row, retrying on deadlock. Auto-commit only: within a
+     * transaction, use {@link #_selectOnce(Connection, String)}.
      */
-    private boolean _updateSet(final JdbcTemplate jdbcTemplate, final String namespace,
-            final long value, final int numRetries, final int maxRetries) {
-        try {
-            int status = jdbcTemplate.update(sqlUpdateSet, value, namespace);
-            return status > 0;
-        } catch (DeadlockLoserDataAccessException dle) {
-            if (numRetries > maxRetries) {
-                throw dle;
-            } else {
-                return _updateSet(jdbcTemplate, namespace, value, numRetries + 1, maxRetries);
+    private long _select(final Connection conn, final String namespace) throws SQLException {
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return _selectOnce(conn, namespace);
+            } catch (SQLException e) {
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
             }
         }
     }
 
-    private final static Long ZERO = new Long(0);
-
-    private Long _select(final JdbcTemplate jdbcTemplate, final String namespace,
-            final int numRetries, final int maxRetries) {
+    private long _selectOnce(final Connection conn, final String namespace) throws SQLException {
+        PreparedStatement stm = conn.prepareStatement(sqlSelect);
         try {
-            Long result = jdbcTemplate.queryForObject(sqlSelect, Long.class, namespace);
-            return result;
-        } catch (EmptyResultDataAccessException e) {
-            return ZERO;
-        } catch (DeadlockLoserDataAccessException dle) {
-            if (numRetries > maxRetries) {
-                throw dle;
-            } else {
-                return _select(jdbcTemplate, namespace, numRetries + 1, maxRetries);
+            stm.setString(1, namespace);
+            ResultSet rs = stm.executeQuery();
+            try {
+                return rs.next() ? rs.getLong(1) : 0;
+            } finally {
+                rs.close();
             }
+        } finally {
+            stm.close();
         }
     }
 
-    private boolean _insert(JdbcTemplate jdbcTemplate, final String namespace,
-            final int numRetries, final int maxRetries) {
-        try {
-            int status = jdbcTemplate.update(sqlInsert, namespace);
-            return status > 0;
-        } catch (DeadlockLoserDataAccessException dle) {
-            if (numRetries > maxRetries) {
-                throw dle;
-            } else {
-                return _insert(jdbcTemplate, namespace, numRetries + 1, maxRetries);
+    private long _addAndGet(final JdbcDialect dialect, final Connection conn,
+            final String namespace, final long delta) throws SQLException {
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return dialect.addAndGet(conn, namespace, delta);
+            } catch (SQLException e) {
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void _insert(final JdbcDialect dialect, final Connection conn,
+            final String namespace) throws SQLException {
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                dialect.insert(conn, namespace);
+                return;
+            } catch (SQLException e) {
+                if (isDuplicateKey(e)) {
+                    // created concurrently
+                    return;
+                }
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
             }
-        } catch (DuplicateKeyException e) {
-            return true;
         }
     }
 
     /**
      * @since 0.3.3
      */
-    private long nextId(final String namespace, final boolean firstRun) {
-        // normal case: update & get the value
+    private long reserveIds(final String namespace, final int count, final boolean firstRun) {
         try {
             Connection conn = connection();
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(false);
-                    JdbcTemplate jdbcTemplate = jdbcTemplate(conn);
-                    if (_update(jdbcTemplate, namespace, 0, 3)) {
-                        Long result = _select(jdbcTemplate, namespace, 0, 3);
-                        conn.commit();
-                        return result != null ? result.longValue() : 0;
-                    }
-                } catch (SQLException e) {
-                    conn.rollback();
-                    throw e;
-                } finally {
-                    conn.close();
-                }
-            } else {
+            if (conn == null) {
                 return -1;
             }
+            try {
+                conn.setAutoCommit(true);
+                JdbcDialect dialect = dialect(conn);
+                long result = _addAndGet(dialect, conn, namespace, count);
+                if (result != JdbcDialect.NO_ROW) {
+                    return result;
+                }
+                if (!firstRun) {
+                    throw new IdException.OperationFailedException();
+                }
+                // the row does not exist in db table, insert it and try again,
+                // once
+                _insert(dialect, conn, namespace);
+            } finally {
+                conn.close();
+            }
         } catch (SQLException e) {
             throw new IdException.OperationFailedException(e);
         }
+        return reserveIds(namespace, count, false);
+    }
 
-        if (!firstRun) {
-            throw new IdException.OperationFailedException();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextId(final String namespace) {
+        Stripes striped = stripes(namespace);
+        if (striped == null) {
+            return reserveIds(namespace, 1, true);
         }
+        int stripe = striped.acquire();
+        try {
+            long counter = reserveIds(striped.rows[stripe], 1, true);
+            return (counter - 1) * striped.rows.length + stripe + 1;
+        } finally {
+            striped.release(stripe);
+        }
+    }
 
-        // first update failed, the row does not exist in db table, try to
-        // insert it
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * On a striped namespace, ids are reserved on a single stripe, and are
+     * {@code getStripes(namespace)} apart.
+     * </p>
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public long[] nextIds(final String namespace, final int count) {
+        Stripes striped = stripes(namespace);
+        if (striped == null) {
+            return super.nextIds(namespace, count);
+        }
+        checkCount(count);
+        int stripe = striped.acquire();
+        try {
+            long last = reserveIds(striped.rows[stripe], count, true);
+            int numStripes = striped.rows.length;
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = (last - count + i) * numStripes + stripe + 1;
+            }
+            return result;
+        } finally {
+            striped.release(stripe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * On a striped namespace, no single stripe owns {@code count} contiguous
+     * ids; the range is carved out above the highest id issued by any stripe,
+     * and every stripe is moved past it, in one transaction.
+     * </p>
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public long reserveIds(final String namespace, final int count) {
+        checkCount(count);
+        Stripes striped = stripes(namespace);
+        if (striped != null) {
+            return reserveStriped(striped, count, true);
+        }
+        return reserveIds(namespace, count, true);
+    }
+
+    private long reserveStriped(final Stripes striped, final int count, final boolean firstRun) {
         try {
             Connection conn = connection();
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    JdbcTemplate jdbcTemplate = jdbcTemplate(conn);
-                    _insert(jdbcTemplate, namespace, 0, 3);
-                } finally {
-                    conn.close();
+            if (conn == null) {
+                return -1;
+            }
+            try {
+                long result = _reserveStriped(conn, striped, count);
+                if (result != JdbcDialect.NO_ROW) {
+                    return result;
+                }
+                if (!firstRun) {
+                    throw new IdException.OperationFailedException();
+                }
+                // some stripe rows do not exist in db table, insert them and
+                // try again, once
+                JdbcDialect dialect = dialect(conn);
+                for (String row : striped.rows) {
+                    _insert(dialect, conn, row);
                 }
+            } finally {
+                conn.close();
             }
         } catch (SQLException e) {
             throw new IdException.OperationFailedException(e);
         }
+        return reserveStriped(striped, count, false);
+    }
+
+    private long _reserveStriped(final Connection conn, final Stripes striped, final int count)
+            throws SQLException {
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return _reserveStripedOnce(conn, striped, count);
+            } catch (SQLException e) {
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
+            }
+        }
+    }
 
-        // try to get next id again, once
-        return nextId(namespace, false);
+    /**
+     * Locks all stripes (in ascending order), then moves each of them past
+     * {@code count} ids above the highest id issued so far.
+     * 
+     * @return the last id of the range, or {@link JdbcDialect#NO_ROW} (nothing
+     *         committed) if a stripe row is missing
+     */
+    private long _reserveStripedOnce(final Connection conn, final Stripes striped,
+            final int count) throws SQLException {
+        int numStripes = striped.rows.length;
+        conn.setAutoCommit(false);
+        try {
+            long[] counters = new long[numStripes];
+            long last = 0;
+            for (int i = 0; i < numStripes; i++) {
+                counters[i] = _lockAndSelect(conn, striped.rows[i]);
+                if (counters[i] == JdbcDialect.NO_ROW) {
+                    conn.rollback();
+                    return JdbcDialect.NO_ROW;
+                }
+                if (counters[i] > 0) {
+                    last = Math.max(last, (counters[i] - 1) * numStripes + i + 1);
+                }
+            }
+            long end = last + count;
+            for (int i = 0; i < numStripes; i++) {
+                long counter = stripeCounter(end, i, numStripes);
+                if (counter > counters[i]) {
+                    _updateSetOnce(conn, striped.rows[i], counter);
+                }
+            }
+            conn.commit();
+            return end;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
     }
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * All namespaces are served in one transaction: a batched {@code UPDATE},
+     * in ascending namespace order, then one {@code SELECT ... IN (...)}.
+     * </p>
+     * 
+     * <p>
+     * Striped namespaces are reserved one by one, as by
+     * {@link #reserveIds(String, int)}, after the others.
+     * </p>
+     * 
+     * @return the last id of the range reserved for each namespace, an empty
+     *         map if error
+     * @since 1.0.0
      */
     @Override
-    public long nextId(final String namespace) {
-        return nextId(namespace, true);
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+        SortedMap<String, Integer> sorted = sortedCounts(counts);
+        SortedMap<String, Integer> single = new TreeMap<String, Integer>();
+        Map<String, Stripes> striped = new HashMap<String, Stripes>();
+        for (Map.Entry<String, Integer> entry : sorted.entrySet()) {
+            Stripes namespaceStripes = stripes(entry.getKey());
+            if (namespaceStripes != null) {
+                striped.put(entry.getKey(), namespaceStripes);
+            } else {
+                single.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (striped.isEmpty()) {
+            return reserveIds(sorted, true);
+        }
+        Map<String, Long> values = single.isEmpty() ? Collections.<String, Long> emptyMap()
+                : reserveIds(single, true);
+        if (values.size() != single.size()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Integer> entry : sorted.entrySet()) {
+            String namespace = entry.getKey();
+            Stripes namespaceStripes = striped.get(namespace);
+            long last = namespaceStripes != null ? reserveStriped(namespaceStripes, entry
+                    .getValue().intValue(), true) : values.get(namespace).longValue();
+            if (last < 0) {
+                return Collections.emptyMap();
+            }
+            result.put(namespace, last);
+        }
+        return result;
+    }
+
+    private Map<String, Long> reserveIds(final SortedMap<String, Integer> counts,
+            final boolean firstRun) {
+        List<String> missing;
+        try {
+            Connection conn = connection();
+            if (conn == null) {
+                return Collections.emptyMap();
+            }
+            try {
+                Map<String, Long> values = new HashMap<String, Long>();
+                _addAndGet(conn, counts, values);
+                if (values.size() == counts.size()) {
+                    Map<String, Long> result = new LinkedHashMap<String, Long>();
+                    for (String namespace : counts.keySet()) {
+                        result.put(namespace, values.get(namespace));
+                    }
+                    return result;
+                }
+                if (!firstRun) {
+                    throw new IdException.OperationFailedException();
+                }
+                // some rows do not exist in db table, insert them and try
+                // again, once
+                missing = new ArrayList<String>(counts.keySet());
+                missing.removeAll(values.keySet());
+                JdbcDialect dialect = dialect(conn);
+                for (String namespace : missing) {
+                    _insert(dialect, conn, namespace);
+                }
+            } finally {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            throw new IdException.OperationFailedException(e);
+        }
+        return reserveIds(counts, false);
+    }
+
+    /**
+     * Adds the counts in one transaction, and reads the new values of the
+     * namespaces that exist. Nothing is committed if a namespace is missing.
+     */
+    private void _addAndGet(final Connection conn, final SortedMap<String, Integer> counts,
+            final Map<String, Long> values) throws SQLException {
+        long start = System.nanoTime();
+        for (int attempt = 0;; attempt++) {
+            try {
+                _addAndGetOnce(conn, counts, values);
+                return;
+            } catch (SQLException e) {
+                if (!retryPolicy.backoff(e, attempt, start)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void _addAndGetOnce(final Connection conn, final SortedMap<String, Integer> counts,
+            final Map<String, Long> values) throws SQLException {
+        values.clear();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement stm = conn.prepareStatement(sqlUpdateAdd);
+            try {
+                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                    stm.setLong(1, entry.getValue().longValue());
+                    stm.setString(2, entry.getKey());
+                    stm.addBatch();
+                }
+                stm.executeBatch();
+            } finally {
+                stm.close();
+            }
+            StringBuilder sql = new StringBuilder(sqlSelectIn);
+            for (int i = 0, n = counts.size(); i < n; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            stm = conn.prepareStatement(sql.append(")").toString());
+            try {
+                int i = 0;
+                for (String namespace : counts.keySet()) {
+                    stm.setString(++i, namespace);
+                }
+                ResultSet rs = stm.executeQuery();
+                try {
+                    while (rs.next()) {
+                        values.put(rs.getString(1), rs.getLong(2));
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stm.close();
+            }
+            if (values.size() == counts.size()) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
     }
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * On a striped namespace: the highest id issued by any stripe.
+     * </p>
      */
     @Override
     public long currentId(final String namespace) {
+        Stripes striped = stripes(namespace);
+        if (striped == null) {
+            return _currentValue(namespace);
+        }
+        int numStripes = striped.rows.length;
+        long result = 0;
+        for (int i = 0; i < numStripes; i++) {
+            long counter = _currentValue(striped.rows[i]);
+            if (counter > 0) {
+                result = Math.max(result, (counter - 1) * numStripes + i + 1);
+            }
+        }
+        return result;
+    }
+
+    private long _currentValue(final String row) {
         try {
             Connection conn = connection();
             if (conn != null) {
                 try {
                     conn.setAutoCommit(true);
-                    JdbcTemplate jdbcTemplate = jdbcTemplate(conn);
-                    Long result = _select(jdbcTemplate, namespace, 0, 3);
-                    return result != null ? result.longValue() : 0;
+                    return _select(conn, row);
                 } finally {
                     conn.close();
                 }
@@ -281,17 +957,37 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
     /**
      * {@inheritDoc}
      * 
+     * <p>
+     * On a striped namespace, sets every stripe so that the next ids are
+     * greater than {@code value}; missing stripe rows are created.
+     * </p>
+     * 
      * @since 0.4.0
      */
     @Override
     public boolean setValue(final String namespace, final long value) {
+        Stripes striped = stripes(namespace);
+        if (striped == null) {
+            return _setValue(namespace, value, false);
+        }
+        int numStripes = striped.rows.length;
+        boolean result = true;
+        for (int i = 0; i < numStripes; i++) {
+            result &= _setValue(striped.rows[i], stripeCounter(value, i, numStripes), true);
+        }
+        return result;
+    }
+
+    private boolean _setValue(final String row, final long value, final boolean createIfMissing) {
         try {
             Connection conn = connection();
             if (conn != null) {
                 try {
                     conn.setAutoCommit(true);
-                    JdbcTemplate jdbcTemplate = jdbcTemplate(conn);
-                    return _updateSet(jdbcTemplate, namespace, value, 0, 3);
+                    if (createIfMissing) {
+                        _insert(dialect(conn), conn, row);
+                    }
+                    return _updateSet(conn, row, value);
                 } finally {
                     conn.close();
                 }
@@ -302,4 +998,4 @@ public class JdbcIdGenerator extends SerialIdGenerator implements IdentityGenera
             throw new IdException.OperationFailedException(e);
         }
     }
-}
\ No newline at end of file
+}
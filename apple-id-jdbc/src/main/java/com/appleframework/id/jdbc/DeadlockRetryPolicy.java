@@ -0,0 +1,158 @@
+package com.appleframework.id.jdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a statement that lost a deadlock (or a serialization
+ * conflict) is retried, and how long to back off before.
+ * 
+ * <p>
+ * Back-off is exponential with full jitter: before retry {@code n} (from 0),
+ * sleeps a random time in {@code [0, min(maxDelay, baseDelay * 2^n)]}, so that
+ * the losers of a deadlock do not collide again. Retrying stops after
+ * {@link #getMaxRetries()} retries, or once {@link #getDeadlineMs()} has
+ * elapsed since the first attempt.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class DeadlockRetryPolicy {
+
+    private int maxRetries = 5;
+    private long baseDelayMs = 2;
+    private long maxDelayMs = 100;
+    private long deadlineMs = 1000;
+
+    private final LongAdder numRetries = new LongAdder();
+    private final LongAdder numGiveUps = new LongAdder();
+    private final LongAdder backoffNanos = new LongAdder();
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public DeadlockRetryPolicy setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public long getBaseDelayMs() {
+        return baseDelayMs;
+    }
+
+    public DeadlockRetryPolicy setBaseDelayMs(long baseDelayMs) {
+        this.baseDelayMs = baseDelayMs;
+        return this;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    public DeadlockRetryPolicy setMaxDelayMs(long maxDelayMs) {
+        this.maxDelayMs = maxDelayMs;
+        return this;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    /**
+     * Sets the time after which a statement is not retried anymore, counted
+     * from its first attempt.
+     * 
+     * @param deadlineMs
+     * @return
+     */
+    public DeadlockRetryPolicy setDeadlineMs(long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+        return this;
+    }
+
+    /**
+     * Number of retries so far.
+     * 
+     * @return
+     */
+    public long getNumRetries() {
+        return numRetries.sum();
+    }
+
+    /**
+     * Number of deadlocks given up on (retries or deadline exhausted) so far.
+     * 
+     * @return
+     */
+    public long getNumGiveUps() {
+        return numGiveUps.sum();
+    }
+
+    /**
+     * Total time spent backing off so far, in milliseconds.
+     * 
+     * @return
+     */
+    public long getBackoffTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(backoffNanos.sum());
+    }
+
+    /**
+     * Checks if an exception reports a lost deadlock or serialization
+     * conflict, i.e. the transaction was rolled back and can be retried.
+     * 
+     * @param e
+     * @return
+     */
+    public boolean isRetryable(SQLException e) {
+        String sqlState = e.getSQLState();
+        // SQLState class 40: transaction rollback; 1213: MySQL deadlock
+        return e instanceof SQLTransactionRollbackException
+                || (sqlState != null && sqlState.startsWith("40")) || e.getErrorCode() == 1213;
+    }
+
+    /**
+     * Called when an attempt failed: backs off and returns {@code true} if the
+     * statement should be retried.
+     * 
+     * @param e
+     *            failure of the attempt
+     * @param attempt
+     *            number of the failed attempt, from 0
+     * @param startNanos
+     *            {@link System#nanoTime()} at the first attempt
+     * @return
+     */
+    public boolean backoff(SQLException e, int attempt, long startNanos) {
+        if (!isRetryable(e)) {
+            return false;
+        }
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs)
+                - (System.nanoTime() - startNanos);
+        if (attempt >= maxRetries || remainingNanos <= 0) {
+            numGiveUps.increment();
+            return false;
+        }
+        long ceilingMs = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+        long delayNanos = Math.min(remainingNanos, (long) (ThreadLocalRandom.current()
+                .nextDouble() * TimeUnit.MILLISECONDS.toNanos(ceilingMs)));
+        if (delayNanos > 0) {
+            long before = System.nanoTime();
+            try {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                backoffNanos.add(System.nanoTime() - before);
+            }
+        }
+        numRetries.increment();
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.appleframework.id.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Portable SQL: {@code UPDATE} then {@code SELECT} in one transaction.
+ * 
+ * <p>
+ * Takes three round trips (update, select, commit) while holding the row
+ * lock; used when no better dialect is known.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class GenericDialect extends JdbcDialect {
+
+    private String sqlUpdate;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GenericDialect init(String tableName, String colName, String colValue) {
+        super.init(tableName, colName, colValue);
+        sqlUpdate = format("UPDATE {0} SET {2}={2}+? WHERE {1}=?");
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long addAndGet(Connection conn, String namespace, long delta) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            long result = NO_ROW;
+            PreparedStatement stm = conn.prepareStatement(sqlUpdate);
+            try {
+                stm.setLong(1, delta);
+                stm.setString(2, namespace);
+                if (stm.executeUpdate() < 1) {
+                    conn.rollback();
+                    return NO_ROW;
+                }
+            } finally {
+                stm.close();
+            }
+            stm = conn.prepareStatement(sqlSelect);
+            try {
+                stm.setString(1, namespace);
+                ResultSet rs = stm.executeQuery();
+                try {
+                    if (rs.next()) {
+                        result = rs.getLong(1);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stm.close();
+            }
+            conn.commit();
+            return result;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
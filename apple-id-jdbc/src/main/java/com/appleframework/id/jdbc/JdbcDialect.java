@@ -0,0 +1,166 @@
+package com.appleframework.id.jdbc;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+
+/**
+ * Database-specific SQL used by {@link com.appleframework.id.JdbcIdGenerator}
+ * to increase a counter and read its new value.
+ * 
+ * <p>
+ * A dialect instance belongs to one generator: it is bound to the generator's
+ * table and columns by {@link #init(String, String, String)}.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public abstract class JdbcDialect {
+
+    /**
+     * Returned by {@link #addAndGet(Connection, String, long)} when the
+     * namespace row does not exist.
+     */
+    public final static long NO_ROW = Long.MIN_VALUE;
+
+    /**
+     * Picks the dialect matching a database: {@link MySqlDialect} for MySQL and
+     * MariaDB, {@link PostgreSqlDialect} for PostgreSQL, {@link GenericDialect}
+     * otherwise.
+     * 
+     * <p>
+     * There is no H2 dialect: H2 gets {@link GenericDialect} (an {@code UPDATE}
+     * then a {@code SELECT} in one transaction). H2 1.4.200 does not reliably
+     * apply data change delta table queries ({@code SELECT ... FROM NEW TABLE
+     * (UPDATE ...)}), and, being embedded, it gains little from saving round
+     * trips anyway.
+     * </p>
+     * 
+     * @param conn
+     * @return
+     * @throws SQLException
+     */
+    public static JdbcDialect detect(Connection conn) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        String product = metaData.getDatabaseProductName();
+        product = product != null ? product.toLowerCase() : "";
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return new MySqlDialect();
+        }
+        if (product.contains("postgresql")) {
+            int major = metaData.getDatabaseMajorVersion();
+            int minor = metaData.getDatabaseMinorVersion();
+            // INSERT ... ON CONFLICT is available since 9.5
+            return new PostgreSqlDialect(major > 9 || (major == 9 && minor >= 5));
+        }
+        // including H2, see above
+        return new GenericDialect();
+    }
+
+    protected String tableName, colName, colValue;
+    protected String sqlInsert, sqlSelect;
+
+    /**
+     * Binds this dialect to a table and builds its SQL.
+     * 
+     * @param tableName
+     * @param colName
+     *            name of the namespace column (primary key)
+     * @param colValue
+     *            name of the value column
+     * @return
+     */
+    public JdbcDialect init(String tableName, String colName, String colValue) {
+        this.tableName = tableName;
+        this.colName = colName;
+        this.colValue = colValue;
+        sqlInsert = format("INSERT INTO {0} ({1}, {2}) VALUES (?, 0)");
+        sqlSelect = format("SELECT {2} FROM {0} WHERE {1}=?");
+        return this;
+    }
+
+    /**
+     * Formats a SQL pattern: {@code {0}} is the table, {@code {1}} the
+     * namespace column and {@code {2}} the value column.
+     * 
+     * @param pattern
+     * @return
+     */
+    protected String format(String pattern) {
+        return MessageFormat.format(pattern, tableName, colName, colValue);
+    }
+
+    /**
+     * Adds {@code delta} to the counter of a namespace and returns its new
+     * value.
+     * 
+     * <p>
+     * The connection is in auto-commit mode when called, and must be left in
+     * auto-commit mode.
+     * </p>
+     * 
+     * @param conn
+     * @param namespace
+     * @param delta
+     * @return the new value, or {@link #NO_ROW} if the namespace does not exist
+     *         (dialects with upsert create it instead)
+     * @throws SQLException
+     */
+    public abstract long addAndGet(Connection conn, String namespace, long delta)
+            throws SQLException;
+
+    /**
+     * Creates the row of a namespace with value {@code 0}.
+     * 
+     * @param conn
+     * @param namespace
+     * @throws SQLException
+     *             including when the row already exists
+     */
+    public void insert(Connection conn, String namespace) throws SQLException {
+        PreparedStatement stm = conn.prepareStatement(sqlInsert);
+        try {
+            stm.setString(1, namespace);
+            stm.executeUpdate();
+        } finally {
+            stm.close();
+        }
+    }
+
+    /**
+     * Executes a statement that returns the new value as the first column of
+     * a single-row result.
+     * 
+     * @param conn
+     * @param sql
+     * @param namespace
+     * @param delta
+     * @return
+     * @throws SQLException
+     */
+    protected static long queryValue(Connection conn, String sql, long delta, String namespace)
+            throws SQLException {
+        PreparedStatement stm = conn.prepareStatement(sql);
+        try {
+            stm.setLong(1, delta);
+            stm.setString(2, namespace);
+            ResultSet rs = stm.executeQuery();
+            try {
+                return rs.next() ? rs.getLong(1) : NO_ROW;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            stm.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,63 @@
+package com.appleframework.id.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * MySQL/MariaDB: a single upsert that stores the new value with
+ * {@code LAST_INSERT_ID(expr)}; the value comes back in the statement's OK
+ * packet and is read through {@link Statement#getGeneratedKeys()}, without
+ * another round trip.
+ * 
+ * <pre>
+ * INSERT INTO t (id_name, id_value) VALUES (?, LAST_INSERT_ID(?))
+ *     ON DUPLICATE KEY UPDATE id_value=LAST_INSERT_ID(id_value+?)
+ * </pre>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class MySqlDialect extends JdbcDialect {
+
+    private String sqlUpsert;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MySqlDialect init(String tableName, String colName, String colValue) {
+        super.init(tableName, colName, colValue);
+        sqlUpsert = format("INSERT INTO {0} ({1}, {2}) VALUES (?, LAST_INSERT_ID(?))"
+                + " ON DUPLICATE KEY UPDATE {2}=LAST_INSERT_ID({2}+?)");
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long addAndGet(Connection conn, String namespace, long delta) throws SQLException {
+        PreparedStatement stm = conn.prepareStatement(sqlUpsert, Statement.RETURN_GENERATED_KEYS);
+        try {
+            stm.setString(1, namespace);
+            stm.setLong(2, delta);
+            stm.setLong(3, delta);
+            stm.executeUpdate();
+            ResultSet rs = stm.getGeneratedKeys();
+            try {
+                // an updated row reports 2 keys, the first one is the value
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+                throw new SQLException("No value returned by LAST_INSERT_ID()");
+            } finally {
+                rs.close();
+            }
+        } finally {
+            stm.close();
+        }
+    }
+}
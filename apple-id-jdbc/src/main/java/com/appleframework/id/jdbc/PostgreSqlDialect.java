@@ -0,0 +1,73 @@
+package com.appleframework.id.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * PostgreSQL: a single upsert returning the new value (9.5+), or
+ * {@code UPDATE ... RETURNING} on older servers.
+ * 
+ * <pre>
+ * INSERT INTO t (id_name, id_value) VALUES (?, ?)
+ *     ON CONFLICT (id_name) DO UPDATE SET id_value=t.id_value+EXCLUDED.id_value
+ *     RETURNING id_value
+ * </pre>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class PostgreSqlDialect extends JdbcDialect {
+
+    private final boolean upsert;
+    private String sqlUpsert, sqlUpdateReturning;
+
+    public PostgreSqlDialect() {
+        this(true);
+    }
+
+    /**
+     * @param upsert
+     *            {@code true} to use {@code INSERT ... ON CONFLICT} (requires
+     *            PostgreSQL 9.5+)
+     */
+    public PostgreSqlDialect(boolean upsert) {
+        this.upsert = upsert;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PostgreSqlDialect init(String tableName, String colName, String colValue) {
+        super.init(tableName, colName, colValue);
+        sqlUpsert = format("INSERT INTO {0} AS t ({1}, {2}) VALUES (?, ?)"
+                + " ON CONFLICT ({1}) DO UPDATE SET {2}=t.{2}+EXCLUDED.{2} RETURNING {2}");
+        sqlUpdateReturning = format("UPDATE {0} SET {2}={2}+? WHERE {1}=? RETURNING {2}");
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long addAndGet(Connection conn, String namespace, long delta) throws SQLException {
+        if (!upsert) {
+            return queryValue(conn, sqlUpdateReturning, delta, namespace);
+        }
+        PreparedStatement stm = conn.prepareStatement(sqlUpsert);
+        try {
+            stm.setString(1, namespace);
+            stm.setLong(2, delta);
+            ResultSet rs = stm.executeQuery();
+            try {
+                return rs.next() ? rs.getLong(1) : NO_ROW;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            stm.close();
+        }
+    }
+}
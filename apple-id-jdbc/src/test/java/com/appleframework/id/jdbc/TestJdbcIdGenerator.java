@@ -0,0 +1,377 @@
+package com.appleframework.id.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+
+import com.appleframework.id.JdbcIdGenerator;
+import com.appleframework.id.SegmentIdGenerator;
+import com.appleframework.id.exception.IdException;
+
+/**
+ * Test case for {@link JdbcIdGenerator}, against an in-memory H2 database.
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestJdbcIdGenerator extends TestCase {
+
+    private BasicDataSource dataSource;
+    private JdbcIdGenerator idGenerator;
+
+    public static Test suite() {
+        return new TestSuite(TestJdbcIdGenerator.class);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:" + getName() + ";DB_CLOSE_DELAY=-1");
+        Connection conn = dataSource.getConnection();
+        try {
+            Statement stm = conn.createStatement();
+            stm.execute("CREATE TABLE id_server (id_name VARCHAR(64) PRIMARY KEY, id_value BIGINT NOT NULL)");
+            stm.close();
+        } finally {
+            conn.close();
+        }
+        idGenerator = new JdbcIdGenerator();
+        idGenerator.setTableName("id_server").setDataSource(dataSource).init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        idGenerator.destroy();
+        Connection conn = dataSource.getConnection();
+        try {
+            Statement stm = conn.createStatement();
+            stm.execute("DROP ALL OBJECTS");
+            stm.close();
+        } finally {
+            conn.close();
+        }
+        dataSource.close();
+    }
+
+    @org.junit.Test
+    public void test1() throws Exception {
+        assertEquals(0, idGenerator.currentId("default"));
+        assertEquals(1, idGenerator.nextId("default"));
+        assertEquals(2, idGenerator.nextId("default"));
+        assertEquals(2, idGenerator.currentId("default"));
+        assertTrue(idGenerator.getDialect() instanceof GenericDialect);
+    }
+
+    @org.junit.Test
+    public void test2() throws Exception {
+        assertEquals(10, idGenerator.reserveIds("default", 10));
+        long[] ids = idGenerator.nextIds("default", 3);
+        assertEquals(11, ids[0]);
+        assertEquals(13, ids[2]);
+        assertTrue(idGenerator.setValue("default", 100));
+        assertEquals(101, idGenerator.nextId("default"));
+    }
+
+    @org.junit.Test
+    public void test3() throws Exception {
+        JdbcIdGenerator generic = new JdbcIdGenerator();
+        generic.setTableName("id_server").setDataSource(dataSource)
+                .setDialect(new GenericDialect()).init();
+        assertEquals(1, generic.nextId("default"));
+        assertEquals(2, idGenerator.nextId("default"));
+        assertEquals(12, generic.reserveIds("default", 10));
+    }
+
+    @org.junit.Test
+    public void test4() throws Exception {
+        idGenerator.setStripes("hot", 4);
+        assertTrue(idGenerator.setValue("hot", 10));
+        final Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+        final int numThreads = 4, numRuns = 250;
+        final CountDownLatch latch = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < numRuns; i++) {
+                            long id = idGenerator.nextId("hot");
+                            ids.put(id, id);
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals(numThreads * numRuns, ids.size());
+        for (long id : ids.keySet()) {
+            assertTrue(id > 10);
+        }
+        long[] batch = idGenerator.nextIds("hot", 3);
+        assertEquals(batch[0] + 4, batch[1]);
+        assertEquals(batch[1] + 4, batch[2]);
+        long max = Math.max(Collections.max(ids.keySet()).longValue(), batch[2]);
+        assertEquals(max, idGenerator.currentId("hot"));
+
+        // a contiguous range above every id issued so far
+        long last = idGenerator.reserveIds("hot", 10);
+        assertEquals(max + 10, last);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(idGenerator.nextId("hot") > last);
+        }
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("hot", 5);
+        counts.put("cold", 2);
+        Map<String, Long> result = idGenerator.reserveIds(counts);
+        assertEquals(2, result.get("cold").longValue());
+        assertEquals(idGenerator.currentId("hot"), result.get("hot").longValue());
+    }
+
+    @org.junit.Test
+    public void test5() throws Exception {
+        assertEquals(1, idGenerator.nextId("order"));
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("order_item", 3);
+        counts.put("order", 1);
+        counts.put("invoice", 2);
+        Map<String, Long> result = idGenerator.reserveIds(counts);
+        assertEquals(Arrays.asList("invoice", "order", "order_item"), new ArrayList<String>(
+                result.keySet()));
+        assertEquals(2, result.get("invoice").longValue());
+        assertEquals(2, result.get("order").longValue());
+        assertEquals(3, result.get("order_item").longValue());
+        result = idGenerator.reserveIds(counts);
+        assertEquals(4, result.get("invoice").longValue());
+        assertEquals(3, result.get("order").longValue());
+        assertEquals(6, result.get("order_item").longValue());
+    }
+
+    @org.junit.Test
+    public void test6() throws Exception {
+        DeadlockRetryPolicy policy = new DeadlockRetryPolicy().setMaxRetries(3).setBaseDelayMs(1)
+                .setMaxDelayMs(5).setDeadlineMs(1000);
+        SQLException deadlock = new SQLException("Deadlock found", "40001", 1213);
+        SQLException other = new SQLException("Syntax error", "42000", 1064);
+        assertTrue(policy.isRetryable(deadlock));
+        assertFalse(policy.isRetryable(other));
+
+        long start = System.nanoTime();
+        assertFalse(policy.backoff(other, 0, start));
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertTrue(policy.backoff(deadlock, attempt, start));
+        }
+        assertFalse(policy.backoff(deadlock, 3, start));
+        assertEquals(3, policy.getNumRetries());
+        assertEquals(1, policy.getNumGiveUps());
+        assertTrue(policy.getBackoffTimeMs() <= 15);
+
+        // no retry once the deadline has passed
+        policy.setDeadlineMs(0);
+        assertFalse(policy.backoff(deadlock, 0, start));
+        assertEquals(2, policy.getNumGiveUps());
+    }
+
+    @org.junit.Test
+    public void test7() throws Exception {
+        assertEquals(100, idGenerator.reserveIds("busy", 100));
+        idGenerator.setStripes("busy", 4);
+        // stripes continue after the ids issued by the single row
+        for (int i = 0; i < 8; i++) {
+            assertTrue(idGenerator.nextId("busy") > 100);
+        }
+
+        // the stripe count is shared through the database
+        JdbcIdGenerator other = new JdbcIdGenerator();
+        other.setTableName("id_server").setDataSource(dataSource).init();
+        assertEquals(4, other.getStripes("busy"));
+        assertTrue(other.nextId("busy") > 108);
+        other.setStripes("busy", 4);
+        try {
+            other.setStripes("busy", 8);
+            fail("stripe count mismatch");
+        } catch (IdException.OperationFailedException e) {
+            // expected
+        }
+
+        // segments of a striped namespace
+        SegmentIdGenerator segments = new SegmentIdGenerator();
+        segments.setIdGenerator(other).setSegmentSize(10).init();
+        try {
+            Map<Long, Long> ids = new HashMap<Long, Long>();
+            for (int i = 0; i < 25; i++) {
+                long id = segments.nextId("busy");
+                ids.put(id, id);
+            }
+            for (int i = 0; i < 25; i++) {
+                long id = idGenerator.nextId("busy");
+                ids.put(id, id);
+            }
+            assertEquals(50, ids.size());
+        } finally {
+            segments.destroy();
+        }
+    }
+
+    /**
+     * A data source whose {@code UPDATE ... SET id_value=?} statements fail
+     * once with a deadlock, on the {@code failAt}-th execution, rolling back
+     * the transaction as MySQL does.
+     */
+    private DataSource deadlockingDataSource(final int failAt) {
+        final AtomicInteger executions = new AtomicInteger();
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { DataSource.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        Object result = invokeTarget(dataSource, method, args);
+                        if (!method.getName().equals("getConnection")) {
+                            return result;
+                        }
+                        final Connection conn = (Connection) result;
+                        return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                new Class<?>[] { Connection.class }, new InvocationHandler() {
+                                    @Override
+                                    public Object invoke(Object proxy, Method method,
+                                            Object[] args) throws Throwable {
+                                        Object result = invokeTarget(conn, method, args);
+                                        if (!method.getName().equals("prepareStatement")
+                                                || !args[0].toString().contains("id_value=?")) {
+                                            return result;
+                                        }
+                                        final PreparedStatement stm = (PreparedStatement) result;
+                                        return Proxy.newProxyInstance(getClass()
+                                                .getClassLoader(),
+                                                new Class<?>[] { PreparedStatement.class },
+                                                new InvocationHandler() {
+                                                    @Override
+                                                    public Object invoke(Object proxy,
+                                                            Method method, Object[] args)
+                                                            throws Throwable {
+                                                        if (method.getName().equals(
+                                                                "executeUpdate")
+                                                                && executions.incrementAndGet() == failAt) {
+                                                            conn.rollback();
+                                                            throw new SQLException(
+                                                                    "Deadlock found", "40001",
+                                                                    1213);
+                                                        }
+                                                        return invokeTarget(stm, method, args);
+                                                    }
+                                                });
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long rowValue(String row) throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try {
+            PreparedStatement stm = conn
+                    .prepareStatement("SELECT id_value FROM id_server WHERE id_name=?");
+            try {
+                stm.setString(1, row);
+                ResultSet rs = stm.executeQuery();
+                try {
+                    return rs.next() ? rs.getLong(1) : -1;
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                stm.close();
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    @org.junit.Test
+    public void test8() throws Exception {
+        assertEquals(100, idGenerator.reserveIds("busy", 100));
+        DeadlockRetryPolicy noRetry = new DeadlockRetryPolicy().setMaxRetries(0);
+
+        // a deadlock on the second stripe: nothing is committed
+        JdbcIdGenerator failing = new JdbcIdGenerator();
+        failing.setTableName("id_server").setDataSource(deadlockingDataSource(2))
+                .setRetryPolicy(noRetry).init();
+        try {
+            failing.setStripes("busy", 4);
+            fail("deadlock");
+        } catch (IdException.OperationFailedException e) {
+            // expected
+        }
+        assertEquals(-1, rowValue("busy#stripes"));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(-1, rowValue("busy#" + i));
+        }
+
+        // retried as a whole: every stripe is seeded
+        JdbcIdGenerator retrying = new JdbcIdGenerator();
+        retrying.setTableName("id_server").setDataSource(deadlockingDataSource(2)).init();
+        retrying.setStripes("busy", 4);
+        assertEquals(4, rowValue("busy#stripes"));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(25, rowValue("busy#" + i));
+        }
+        assertEquals(1, retrying.getRetryPolicy().getNumRetries());
+
+        // same for a range reservation
+        failing = new JdbcIdGenerator();
+        failing.setTableName("id_server").setDataSource(deadlockingDataSource(2))
+                .setRetryPolicy(noRetry).init();
+        try {
+            failing.reserveIds("busy", 10);
+            fail("deadlock");
+        } catch (IdException.OperationFailedException e) {
+            // expected
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(25, rowValue("busy#" + i));
+        }
+        retrying = new JdbcIdGenerator();
+        retrying.setTableName("id_server").setDataSource(deadlockingDataSource(2)).init();
+        long last = retrying.reserveIds("busy", 10);
+        assertEquals(110, last);
+        for (int i = 0; i < 4; i++) {
+            // the next id of each stripe is above the range
+            assertTrue(rowValue("busy#" + i) * 4 + i + 1 > last);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package test.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.appleframework.id.JdbcIdGenerator;
+
+/**
+ * Measures bytes allocated and time spent per id by {@link JdbcIdGenerator}
+ * against embedded H2, and by the former per-call {@link JdbcTemplate} path.
+ * H2 runs with {@link com.appleframework.id.jdbc.GenericDialect} (no
+ * single-statement path), so this measures the pooled, statement-cached
+ * {@code UPDATE} + {@code SELECT}, not the MySQL/PostgreSQL dialects.
+ * Run with {@code -DpoolPreparedStatements=false} to measure without the
+ * pool's statement cache.
+ */
+public class BenchmarkH2 {
+
+    private interface IdSupplier {
+        long nextId() throws SQLException;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    private static void runTest(String name, IdSupplier supplier, int numRuns)
+            throws SQLException {
+        // warm up
+        for (int i = 0; i < numRuns; i++) {
+            supplier.nextId();
+        }
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threadMXBean().getThreadAllocatedBytes(threadId);
+        long timeBefore = System.nanoTime();
+        for (int i = 0; i < numRuns; i++) {
+            supplier.nextId();
+        }
+        long totalTime = System.nanoTime() - timeBefore;
+        long totalBytes = threadMXBean().getThreadAllocatedBytes(threadId) - bytesBefore;
+        System.out.println(String.format("[%s] %,10.0f ids/sec\t%,8d bytes/id", name, numRuns
+                / (totalTime / 1E9), totalBytes / numRuns));
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int numRuns;
+        try {
+            numRuns = Integer.parseInt(System.getProperty("numRuns"));
+        } catch (Exception e) {
+            numRuns = 100000;
+        }
+        String poolPreparedStatements = System.getProperty("poolPreparedStatements");
+
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        ds.setPoolPreparedStatements(poolPreparedStatements == null
+                || Boolean.parseBoolean(poolPreparedStatements));
+        System.out.println("Pool prepared statements: " + ds.isPoolPreparedStatements());
+        Connection conn = ds.getConnection();
+        try {
+            Statement stm = conn.createStatement();
+            stm.execute("CREATE TABLE id_server (id_name VARCHAR(64) PRIMARY KEY, id_value BIGINT NOT NULL)");
+            stm.execute("INSERT INTO id_server VALUES ('default', 0)");
+            stm.close();
+        } finally {
+            conn.close();
+        }
+
+        final JdbcIdGenerator idGenerator = new JdbcIdGenerator();
+        idGenerator.setTableName("id_server").setDataSource(ds).init();
+
+        runTest("JdbcTemplate", new IdSupplier() {
+            @Override
+            public long nextId() throws SQLException {
+                Connection conn = ds.getConnection();
+                try {
+                    conn.setAutoCommit(false);
+                    JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(
+                            conn, true));
+                    jdbcTemplate.update("UPDATE id_server SET id_value=id_value+? WHERE id_name=?",
+                            1, "default");
+                    Long result = jdbcTemplate.queryForObject(
+                            "SELECT id_value FROM id_server WHERE id_name=?", Long.class,
+                            "default");
+                    conn.commit();
+                    return result.longValue();
+                } finally {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            }
+        }, numRuns);
+        // resolves the dialect
+        idGenerator.nextId("default");
+        String dialect = idGenerator.getDialect().getClass().getSimpleName();
+        runTest("JdbcIdGenerator/" + dialect, new IdSupplier() {
+            @Override
+            public long nextId() {
+                return idGenerator.nextId("default");
+            }
+        }, numRuns);
+
+        idGenerator.destroy();
+        ds.close();
+    }
+}
@@ -1,15 +1,34 @@
 package com.appleframework.id;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.appleframework.id.exception.IdException;
+import com.appleframework.id.redis.IAsyncRedisClient;
 import com.appleframework.id.redis.IRedisClient;
 import com.appleframework.id.redis.PoolConfig;
 import com.appleframework.id.redis.RedisClientFactory;
+import com.appleframework.id.redis.impl.JedisClientPool;
+import com.appleframework.id.redis.impl.JedisClientStripes;
+import com.appleframework.id.redis.impl.LettuceRedisClient;
 
 /**
  * This id generator utilizes Redis (http://redis.io/) to generate serial IDs.
@@ -19,6 +38,29 @@ import com.appleframework.id.redis.RedisClientFactory;
  * Redis backend runs in persistent mode).
  * </p>
  * 
+ * <p>
+ * Coalescing mode (see {@link #setCoalescing(boolean)}): concurrent
+ * {@link #nextId(String)}/{@link #reserveIds(String, int)} calls are queued and
+ * sent by a dispatcher thread as one pipeline, with a single {@code INCRBY} per
+ * namespace, on one borrowed connection; each caller then gets its own range
+ * of the increment. Many threads share a few round trips instead of each
+ * borrowing a connection.
+ * </p>
+ * 
+ * <p>
+ * Striped connections mode (see {@link #setConnectionStripes(int)}):
+ * {@link #nextId(String)}/{@link #reserveIds(String, int)} run on a fixed set
+ * of dedicated connections, one per stripe of threads, instead of borrowing
+ * from the pool. Connections are checked in background, not on each call.
+ * </p>
+ * 
+ * <p>
+ * Multiplexed mode (see {@link #setMultiplexed(boolean)}): all operations share
+ * one non-blocking connection, and {@link #nextIdAsync(String)}/
+ * {@link #reserveIdsAsync(String, int)} return without waiting for the
+ * server, so many in-flight calls need neither a thread nor a connection each.
+ * </p>
+ * 
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 0.1.0
  */
@@ -98,11 +140,51 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
         }
     }
 
+    /**
+     * A queued reservation, in coalescing mode.
+     */
+    private static class IncRequest {
+        private final String namespace;
+        private final int count;
+        private final CompletableFuture<Long> future = new CompletableFuture<Long>();
+
+        public IncRequest(String namespace, int count) {
+            this.namespace = namespace;
+            this.count = count;
+        }
+    }
+
+    public final static int DEFAULT_MAX_BATCH_SIZE = 256;
+    public final static long DEFAULT_HEALTH_CHECK_INTERVAL_MS = 30000;
+    public final static long DEFAULT_REQUEST_TIMEOUT_MS = 10000;
+
+    /**
+     * How often the pool is requested again from the factory, to keep it from
+     * being closed as unused.
+     */
+    private final static long POOL_REFRESH_NANOS = TimeUnit.MINUTES.toNanos(1);
+
     private RedisClientFactory redisFactory;
     private String redisHost = "localhost";
     private int redisPort = 6379;
     private String redisUser, redisPassword;
     private PoolConfig redisPoolConfig;
+    private volatile JedisClientPool redisClientPool;
+    private volatile long redisClientPoolExpiry;
+    private boolean scripting = true;
+    private boolean coalescing = false;
+    private int connectionStripes = 0;
+    private boolean multiplexed = false;
+    private IAsyncRedisClient multiplexedClient;
+    private long healthCheckIntervalMs = DEFAULT_HEALTH_CHECK_INTERVAL_MS;
+    private JedisClientStripes clientStripes;
+    private ScheduledExecutorService healthChecker;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long batchWindowMicros = 0;
+    private long requestTimeoutMs = DEFAULT_REQUEST_TIMEOUT_MS;
+    private BlockingQueue<IncRequest> incQueue;
+    private Thread dispatcher;
+    private volatile boolean running;
 
     public String getRedisHost() {
         return redisHost;
@@ -110,6 +192,7 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
 
     public RedisIdGenerator setRedisHost(String redisHost) {
         this.redisHost = redisHost;
+        this.redisClientPool = null;
         return this;
     }
 
@@ -119,6 +202,7 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
 
     public RedisIdGenerator setRedisPort(int redisPort) {
         this.redisPort = redisPort;
+        this.redisClientPool = null;
         return this;
     }
 
@@ -128,6 +212,7 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
 
     public RedisIdGenerator setRedisUser(String redisUser) {
         this.redisUser = redisUser;
+        this.redisClientPool = null;
         return this;
     }
 
@@ -137,6 +222,7 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
 
     public RedisIdGenerator setRedisPassword(String redisPassword) {
         this.redisPassword = redisPassword;
+        this.redisClientPool = null;
         return this;
     }
 
@@ -146,6 +232,146 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
 
     public RedisIdGenerator setRedisPoolConfig(PoolConfig redisPoolConfig) {
         this.redisPoolConfig = redisPoolConfig;
+        this.redisClientPool = null;
+        return this;
+    }
+
+    public boolean isScripting() {
+        return scripting;
+    }
+
+    /**
+     * Serves {@link #reserveIds(Map)} with one atomic server-side script call
+     * (default), or with a pipeline of independent {@code INCRBY} commands
+     * (e.g. for servers that disable scripting).
+     * 
+     * @param scripting
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setScripting(boolean scripting) {
+        this.scripting = scripting;
+        return this;
+    }
+
+    public int getConnectionStripes() {
+        return connectionStripes;
+    }
+
+    /**
+     * Number of dedicated connections for striped connections mode, e.g. the
+     * number of cores; 0 (default) borrows from the pool. Must be set before
+     * {@link #init()}.
+     * 
+     * @param connectionStripes
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setConnectionStripes(int connectionStripes) {
+        this.connectionStripes = connectionStripes;
+        return this;
+    }
+
+    public long getHealthCheckIntervalMs() {
+        return healthCheckIntervalMs;
+    }
+
+    /**
+     * How often dedicated connections are checked (striped connections mode).
+     * 
+     * @param healthCheckIntervalMs
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+        this.healthCheckIntervalMs = healthCheckIntervalMs;
+        return this;
+    }
+
+    public boolean isMultiplexed() {
+        return multiplexed;
+    }
+
+    /**
+     * Enables multiplexed mode. Must be set before {@link #init()}. Requires
+     * {@code io.lettuce:lettuce-core}, an optional dependency.
+     * 
+     * @param multiplexed
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setMultiplexed(boolean multiplexed) {
+        this.multiplexed = multiplexed;
+        return this;
+    }
+
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Enables coalescing mode. Must be set before {@link #init()}.
+     * 
+     * @param coalescing
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Maximum number of calls sent in one pipeline (coalescing mode).
+     * 
+     * @param maxBatchSize
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        if (this.maxBatchSize < 1) {
+            this.maxBatchSize = 1;
+        }
+        return this;
+    }
+
+    public long getBatchWindowMicros() {
+        return batchWindowMicros;
+    }
+
+    /**
+     * How long the dispatcher waits for more calls before sending a batch
+     * that is not full (coalescing mode). With 0 (default), a batch holds the
+     * calls queued while the previous one was in flight.
+     * 
+     * @param batchWindowMicros
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setBatchWindowMicros(long batchWindowMicros) {
+        this.batchWindowMicros = batchWindowMicros;
+        return this;
+    }
+
+    public long getRequestTimeoutMs() {
+        return requestTimeoutMs;
+    }
+
+    /**
+     * How long a blocking call waits for its queued (coalescing mode) or
+     * in-flight (multiplexed mode) reservation before failing.
+     * 
+     * @param requestTimeoutMs
+     * @return
+     * @since 1.0.0
+     */
+    public RedisIdGenerator setRequestTimeoutMs(long requestTimeoutMs) {
+        this.requestTimeoutMs = requestTimeoutMs;
         return this;
     }
 
@@ -156,10 +382,87 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
     public RedisIdGenerator init() {
         super.init();
         redisFactory = RedisClientFactory.newFactory();
+        if (multiplexed) {
+            multiplexedClient = newMultiplexedClient();
+        }
+        if (connectionStripes > 0) {
+            final JedisClientStripes stripes = new JedisClientStripes(redisHost, redisPort,
+                    redisUser, redisPassword, connectionStripes);
+            clientStripes = stripes;
+            healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "RedisIdGenerator-health-check");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            healthChecker.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    stripes.checkHealth();
+                }
+            }, healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        if (coalescing) {
+            incQueue = new LinkedBlockingQueue<IncRequest>();
+            running = true;
+            dispatcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchLoop();
+                }
+            }, "RedisIdGenerator-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
         return this;
     }
 
+    /**
+     * Creates the client of multiplexed mode. Lettuce is an optional
+     * dependency, only loaded from here, so that the other modes work without
+     * it on the classpath.
+     */
+    private IAsyncRedisClient newMultiplexedClient() {
+        try {
+            Class.forName("io.lettuce.core.RedisClient", false,
+                    RedisIdGenerator.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IdException.OperationFailedException(
+                    "Multiplexed mode requires io.lettuce:lettuce-core on the classpath", e);
+        }
+        return new LettuceRedisClient().setRedisHost(redisHost).setRedisPort(redisPort)
+                .setRedisUsername(redisUser).setRedisPassword(redisPassword).init();
+    }
+
     public void destroy() {
+        redisClientPool = null;
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+        if (clientStripes != null) {
+            clientStripes.destroy();
+            clientStripes = null;
+        }
+        if (dispatcher != null) {
+            running = false;
+            dispatcher.interrupt();
+            try {
+                dispatcher.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dispatcher = null;
+            List<IncRequest> pending = new ArrayList<IncRequest>();
+            incQueue.drainTo(pending);
+            fail(pending, new IdException.OperationFailedException("Id generator destroyed"));
+        }
+        if (multiplexedClient != null) {
+            multiplexedClient.destroy();
+            multiplexedClient = null;
+        }
         try {
             if (redisFactory != null) {
                 redisFactory.destroy();
@@ -171,16 +474,192 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
         super.destroy();
     }
 
+    /**
+     * Borrows a client from the pool of this generator's configuration. The
+     * pool is resolved once (and after configuration changes), not on every
+     * call. In multiplexed mode, the shared client is returned instead.
+     * 
+     * @return the client, {@code null} if none could be obtained
+     */
+    private IRedisClient borrowRedisClient() {
+        if (multiplexedClient != null) {
+            return multiplexedClient;
+        }
+        JedisClientPool pool = redisClientPool;
+        long now = System.nanoTime();
+        if (pool == null || now - redisClientPoolExpiry > 0 || pool.isClosed()) {
+            pool = redisFactory.getRedisClientPool(redisHost, redisPort, redisUser,
+                    redisPassword, redisPoolConfig);
+            redisClientPool = pool;
+            redisClientPoolExpiry = now + POOL_REFRESH_NANOS;
+            if (pool == null) {
+                return null;
+            }
+        }
+        try {
+            return pool.borrowObject();
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static void fail(List<IncRequest> batch, Throwable cause) {
+        for (IncRequest request : batch) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Takes queued calls in batches and sends them, until destroyed.
+     */
+    private void dispatchLoop() {
+        List<IncRequest> batch = new ArrayList<IncRequest>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(incQueue.take());
+                incQueue.drainTo(batch, maxBatchSize - 1);
+                if (batchWindowMicros > 0) {
+                    long deadline = System.nanoTime() + batchWindowMicros * 1000;
+                    while (batch.size() < maxBatchSize) {
+                        IncRequest request = incQueue.poll(deadline - System.nanoTime(),
+                                TimeUnit.NANOSECONDS);
+                        if (request == null) {
+                            break;
+                        }
+                        batch.add(request);
+                        incQueue.drainTo(batch, maxBatchSize - batch.size());
+                    }
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                fail(batch, new IdException.OperationFailedException("Id generator destroyed"));
+            } catch (Exception e) {
+                fail(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends one {@code INCRBY} per namespace of the batch, in one pipeline,
+     * and hands each call its part of the increment, in queue order.
+     */
+    private void dispatch(List<IncRequest> batch) {
+        // namespace -> {total count, last id handed out}
+        Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+        for (IncRequest request : batch) {
+            long[] total = totals.get(request.namespace);
+            if (total == null) {
+                total = new long[2];
+                totals.put(request.namespace, total);
+            }
+            total[0] += request.count;
+        }
+        String[] keys = totals.keySet().toArray(new String[totals.size()]);
+        long[] values = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = totals.get(keys[i])[0];
+        }
+        IRedisClient redisClient = borrowRedisClient();
+        if (redisClient == null) {
+            for (IncRequest request : batch) {
+                request.future.complete(-1L);
+            }
+            return;
+        }
+        long[] lasts;
+        try {
+            lasts = redisClient.multiIncBy(keys, values);
+        } catch (Exception e) {
+            fail(batch, new IdException.OperationFailedException(e));
+            return;
+        } finally {
+            redisClient.close();
+        }
+        for (int i = 0; i < keys.length; i++) {
+            totals.get(keys[i])[1] = lasts[i] - values[i];
+        }
+        for (IncRequest request : batch) {
+            long[] total = totals.get(request.namespace);
+            total[1] += request.count;
+            request.future.complete(total[1]);
+        }
+    }
+
+    private long reserveCoalesced(final String namespace, final int count) {
+        if (!running) {
+            throw new IdException.OperationFailedException("Id generator destroyed");
+        }
+        IncRequest request = new IncRequest(namespace, count);
+        incQueue.add(request);
+        if (!running) {
+            // destroyed meanwhile: the queue may already have been drained
+            incQueue.remove(request);
+            request.future.completeExceptionally(new IdException.OperationFailedException(
+                    "Id generator destroyed"));
+        }
+        try {
+            return request.future.get(requestTimeoutMs, TimeUnit.MILLISECONDS).longValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdException.OperationFailedException(e);
+        } catch (TimeoutException e) {
+            incQueue.remove(request);
+            throw new IdException.OperationFailedException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IdException) {
+                throw (IdException) cause;
+            }
+            throw new IdException.OperationFailedException(cause);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public long nextId(final String namespace) {
-        IRedisClient redisClient = redisFactory.getRedisClient(redisHost, redisPort, redisUser,
-                redisPassword, redisPoolConfig);
+        return reserveIds(namespace, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public long reserveIds(final String namespace, final int count) {
+        checkCount(count);
+        if (coalescing) {
+            return reserveCoalesced(namespace, count);
+        }
+        if (multiplexedClient != null) {
+            try {
+                return reserveIdsAsync(namespace, count)
+                        .get(requestTimeoutMs, TimeUnit.MILLISECONDS).longValue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdException.OperationFailedException(e);
+            } catch (TimeoutException e) {
+                throw new IdException.OperationFailedException(e);
+            } catch (ExecutionException e) {
+                throw (IdException) e.getCause();
+            }
+        }
+        if (clientStripes != null) {
+            try {
+                return clientStripes.incBy(namespace, count);
+            } catch (Exception e) {
+                throw new IdException.OperationFailedException(e);
+            }
+        }
+        IRedisClient redisClient = borrowRedisClient();
         if (redisClient != null) {
             try {
-                return redisClient.incBy(namespace, 1);
+                return redisClient.incBy(namespace, count);
             } catch (Exception e) {
                 throw new IdException.OperationFailedException(e);
             } finally {
@@ -191,13 +670,104 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
         }
     }
 
+    /**
+     * Generates next id for a namespace, without blocking the caller.
+     * 
+     * @param namespace
+     * @return completes with the id, or with an {@link IdException}
+     * @see #reserveIdsAsync(String, int)
+     * @since 1.0.0
+     */
+    public CompletableFuture<Long> nextIdAsync(final String namespace) {
+        return reserveIdsAsync(namespace, 1);
+    }
+
+    /**
+     * Reserves a range of ids for a namespace, without blocking the caller.
+     * 
+     * <p>
+     * Only multiplexed mode is truly non-blocking; in other modes the id is
+     * obtained as by {@link #reserveIds(String, int)} and the returned future
+     * is already complete.
+     * </p>
+     * 
+     * @param namespace
+     * @param count
+     * @return completes with the last id of the range, or with an
+     *         {@link IdException}
+     * @since 1.0.0
+     */
+    public CompletableFuture<Long> reserveIdsAsync(final String namespace, final int count) {
+        checkCount(count);
+        final CompletableFuture<Long> result = new CompletableFuture<Long>();
+        IAsyncRedisClient redisClient = multiplexedClient;
+        if (redisClient == null) {
+            try {
+                result.complete(reserveIds(namespace, count));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        redisClient.incByAsync(namespace, count).whenComplete(
+                new BiConsumer<Long, Throwable>() {
+                    @Override
+                    public void accept(Long value, Throwable cause) {
+                        if (cause != null) {
+                            result.completeExceptionally(cause instanceof IdException ? cause
+                                    : new IdException.OperationFailedException(cause));
+                        } else {
+                            result.complete(value);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * All namespaces are served in one round trip: an atomic Lua script
+     * applying {@code INCRBY} to each of them, or a pipeline of {@code INCRBY}
+     * commands if {@link #isScripting()} is off.
+     * </p>
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+        SortedMap<String, Integer> sorted = sortedCounts(counts);
+        String[] keys = sorted.keySet().toArray(new String[sorted.size()]);
+        long[] values = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = sorted.get(keys[i]).longValue();
+        }
+        IRedisClient redisClient = borrowRedisClient();
+        if (redisClient == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            long[] lasts = scripting ? redisClient.atomicMultiIncBy(keys, values) : redisClient
+                    .multiIncBy(keys, values);
+            Map<String, Long> result = new LinkedHashMap<String, Long>();
+            for (int i = 0; i < keys.length; i++) {
+                result.put(keys[i], lasts[i]);
+            }
+            return result;
+        } catch (Exception e) {
+            throw new IdException.OperationFailedException(e);
+        } finally {
+            redisClient.close();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public long currentId(final String namespace) {
-        IRedisClient redisClient = redisFactory.getRedisClient(redisHost, redisPort, redisUser,
-                redisPassword, redisPoolConfig);
+        IRedisClient redisClient = borrowRedisClient();
         if (redisClient != null) {
             try {
                 String value = redisClient.get(namespace);
@@ -221,8 +791,7 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
      */
     @Override
     public boolean setValue(final String namespace, final long value) {
-        IRedisClient redisClient = redisFactory.getRedisClient(redisHost, redisPort, redisUser,
-                redisPassword, redisPoolConfig);
+        IRedisClient redisClient = borrowRedisClient();
         if (redisClient != null) {
             try {
                 redisClient.set(namespace, String.valueOf(value), IRedisClient.TTL_PERSISTENT);
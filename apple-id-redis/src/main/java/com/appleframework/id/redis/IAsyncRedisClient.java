@@ -0,0 +1,26 @@
+package com.appleframework.id.redis;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Redis client API with non-blocking operations, shared by all threads.
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public interface IAsyncRedisClient extends IRedisClient {
+
+    /**
+     * Increments the number stored at a key, without blocking the caller.
+     * 
+     * @param key
+     * @param value
+     * @return completes with the value of key after the increment
+     */
+    public CompletableFuture<Long> incByAsync(String key, long value);
+
+    /**
+     * Closes the connections and releases the resources of the client.
+     */
+    public void destroy();
+}
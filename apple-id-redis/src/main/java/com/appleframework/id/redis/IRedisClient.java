@@ -165,6 +165,30 @@ public interface IRedisClient {
      */
     public long incBy(String key, long value);
 
+    /**
+     * Increments the numbers stored at several keys, in a single round trip,
+     * and returns the values after the increments.
+     * 
+     * @param keys
+     * @param values
+     *            increment for each key
+     * @return the value of each key after its increment
+     * @since 1.0.0
+     */
+    public long[] multiIncBy(String[] keys, long[] values);
+
+    /**
+     * Increments the numbers stored at several keys atomically, with a single
+     * server-side script call, and returns the values after the increments.
+     * 
+     * @param keys
+     * @param values
+     *            increment for each key
+     * @return the value of each key after its increment
+     * @since 1.0.0
+     */
+    public long[] atomicMultiIncBy(String[] keys, long[] values);
+
     /**
      * Sets a value to Redis server.
      * 
@@ -177,6 +177,41 @@ public abstract class RedisClientFactory {
         return getRedisClient(host, port, username, password, null);
     }
 
+    /**
+     * Gets or Creates the {@link JedisClientPool} for a configuration.
+     * 
+     * <p>
+     * Callers that keep the pool instead of calling
+     * {@link #getRedisClient(String, int, String, String, PoolConfig)} each
+     * time should get it again now and then: pools not requested for an hour
+     * are closed.
+     * </p>
+     * 
+     * @param host
+     * @param port
+     * @param username
+     * @param password
+     * @param poolConfig
+     * @return
+     * @since 1.0.0
+     */
+    public JedisClientPool getRedisClientPool(final String host, final int port,
+            final String username, final String password, final PoolConfig poolConfig) {
+        String poolName = calcRedisPoolName(host, port, username, password, poolConfig);
+
+        try {
+            return cacheRedisClientPools.get(poolName, new Callable<JedisClientPool>() {
+                @Override
+                public JedisClientPool call() throws Exception {
+                    return createRedisClientPool(host, port, username, password, poolConfig);
+                }
+            });
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Gets or Creates a {@link IRedisClient} object.
      * 
@@ -189,16 +224,12 @@ public abstract class RedisClientFactory {
      */
     public IRedisClient getRedisClient(final String host, final int port, final String username,
             final String password, final PoolConfig poolConfig) {
-        String poolName = calcRedisPoolName(host, port, username, password, poolConfig);
-
+        JedisClientPool redisClientPool = getRedisClientPool(host, port, username, password,
+                poolConfig);
+        if (redisClientPool == null) {
+            return null;
+        }
         try {
-            JedisClientPool redisClientPool = cacheRedisClientPools.get(poolName,
-                    new Callable<JedisClientPool>() {
-                        @Override
-                        public JedisClientPool call() throws Exception {
-                            return createRedisClientPool(host, port, username, password, poolConfig);
-                        }
-                    });
             return redisClientPool.borrowObject();
         } catch (Exception e) {
         	logger.error(e.getMessage(), e);
@@ -1,7 +1,7 @@
 package com.appleframework.id.redis;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
@@ -19,7 +19,11 @@ public class RedisClientPool<T extends IRedisClient> extends GenericObjectPool<T
 	private static Logger logger = LoggerFactory.getLogger(RedisClientPool.class);  
 
 	private PoolConfig poolConfig;
-    private Set<T> activeClients = new HashSet<T>();
+    /**
+     * Borrowed clients, invalidated by {@link #close()}. Whoever removes a
+     * client from the set (return or close) handles it.
+     */
+    private final Set<T> activeClients = ConcurrentHashMap.newKeySet();
 
     public RedisClientPool(PooledObjectFactory<T> factory, PoolConfig poolConfig) {
         super(factory);
@@ -79,19 +83,28 @@ public class RedisClientPool<T extends IRedisClient> extends GenericObjectPool<T
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Clients still borrowed are invalidated; returning them afterwards is
+     * harmless.
+     * </p>
      */
     @Override
     public void close() {
-        try {
-            for (T client : activeClients) {
-                try {
-                    invalidateObject(client);
-                } catch (Exception e) {
-                	logger.warn(e.getMessage(), e);
-                }
+        // closing first stops new borrows, see borrowObject()
+        super.close();
+        for (T client : activeClients) {
+            invalidateTracked(client);
+        }
+    }
+
+    private void invalidateTracked(T client) {
+        if (activeClients.remove(client)) {
+            try {
+                invalidateObject(client);
+            } catch (Exception e) {
+                logger.warn(e.getMessage(), e);
             }
-        } finally {
-            super.close();
         }
     }
 
@@ -103,6 +116,11 @@ public class RedisClientPool<T extends IRedisClient> extends GenericObjectPool<T
         T redisClient = super.borrowObject();
         if (redisClient != null) {
             activeClients.add(redisClient);
+            if (isClosed()) {
+                // closed while borrowing
+                invalidateTracked(redisClient);
+                throw new IllegalStateException("Pool not open");
+            }
         }
         return redisClient;
     }
@@ -110,14 +128,14 @@ public class RedisClientPool<T extends IRedisClient> extends GenericObjectPool<T
     /**
      * {@inheritDoc}
      * 
-     * @throws Exception
+     * <p>
+     * Clients that are not borrowed from this pool (any more) are ignored.
+     * </p>
      */
     @Override
     public void returnObject(T redisClient) {
-        try {
+        if (activeClients.remove(redisClient)) {
             super.returnObject(redisClient);
-        } finally {
-            activeClients.remove(redisClient);
         }
     }
 }
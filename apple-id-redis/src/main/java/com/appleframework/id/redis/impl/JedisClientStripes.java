@@ -0,0 +1,130 @@
+package com.appleframework.id.redis.impl;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed number of dedicated {@link JedisRedisClient} connections, not
+ * pooled: each thread uses the connection of its stripe
+ * ({@code thread id % stripes}), under the stripe's lock.
+ * 
+ * <p>
+ * There is no borrow/return and no validation on the call path: a connection
+ * that fails is dropped and reconnected on next use, and idle connections are
+ * checked by {@link #checkHealth()}, meant to run in background.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class JedisClientStripes {
+
+    private static Logger logger = LoggerFactory.getLogger(JedisClientStripes.class);
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private JedisRedisClient redisClient; // guarded by lock
+    }
+
+    private final String redisHost, redisUsername, redisPassword;
+    private final int redisPort;
+    private final Stripe[] stripes;
+
+    public JedisClientStripes(String host, int port, String username, String password,
+            int numStripes) {
+        if (numStripes < 1) {
+            throw new IllegalArgumentException("Number of stripes must be positive: "
+                    + numStripes);
+        }
+        this.redisHost = host;
+        this.redisPort = port;
+        this.redisUsername = username;
+        this.redisPassword = password;
+        this.stripes = new Stripe[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public int getNumStripes() {
+        return stripes.length;
+    }
+
+    private JedisRedisClient connect() {
+        JedisRedisClient redisClient = new JedisRedisClient();
+        redisClient.setRedisHost(redisHost).setRedisPort(redisPort)
+                .setRedisUsername(redisUsername).setRedisPassword(redisPassword);
+        redisClient.init();
+        return redisClient;
+    }
+
+    private static void disconnect(Stripe stripe) {
+        if (stripe.redisClient != null) {
+            stripe.redisClient.destroy();
+            stripe.redisClient = null;
+        }
+    }
+
+    /**
+     * Increments the number stored at a key, on the current thread's
+     * connection.
+     * 
+     * @param key
+     * @param value
+     * @return the value of key after the increment
+     */
+    public long incBy(String key, long value) {
+        Stripe stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+        stripe.lock.lock();
+        try {
+            if (stripe.redisClient == null) {
+                stripe.redisClient = connect();
+            }
+            return stripe.redisClient.incBy(key, value);
+        } catch (RuntimeException e) {
+            disconnect(stripe);
+            throw e;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Pings the idle connections, and (re)connects the missing or broken ones.
+     * Connections in use are skipped.
+     */
+    public void checkHealth() {
+        for (Stripe stripe : stripes) {
+            if (!stripe.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (stripe.redisClient == null || stripe.redisClient.ping() == null) {
+                    disconnect(stripe);
+                    stripe.redisClient = connect();
+                }
+            } catch (Exception e) {
+                logger.warn("Redis connection check failed: " + e.getMessage());
+                disconnect(stripe);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes all connections.
+     */
+    public void destroy() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                disconnect(stripe);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+}
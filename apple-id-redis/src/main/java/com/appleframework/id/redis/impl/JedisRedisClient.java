@@ -1,5 +1,6 @@
 package com.appleframework.id.redis.impl;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -10,6 +11,8 @@ import org.apache.commons.lang3.StringUtils;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 import redis.clients.util.SafeEncoder;
 
 import com.appleframework.id.redis.IRedisClient;
@@ -24,6 +27,17 @@ import com.appleframework.id.redis.MessageListener;
  */
 public class JedisRedisClient implements IRedisClient {
 
+    /**
+     * Applies {@code INCRBY KEYS[i] ARGV[i]} to all keys, returns the new
+     * values.
+     */
+    public final static String SCRIPT_MULTI_INCRBY = "local r = {} for i, k in ipairs(KEYS) do r[i] = redis.call('INCRBY', k, ARGV[i]) end return r";
+
+    /**
+     * SHA1 of {@link #SCRIPT_MULTI_INCRBY}, once loaded into the server.
+     */
+    private static volatile String scriptMultiIncBySha;
+
     private Jedis redisClient;
     private final ConcurrentMap<String, Set<MessageListener>> topicSubscriptions = new ConcurrentHashMap<String, Set<MessageListener>>();
     private final ConcurrentMap<MessageListener, WrappedJedisPubSub> topicSubscriptionMappings = new ConcurrentHashMap<MessageListener, WrappedJedisPubSub>();
@@ -236,6 +250,60 @@ public class JedisRedisClient implements IRedisClient {
         return result != null ? result.longValue() : 0;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] multiIncBy(String[] keys, long[] values) {
+        Pipeline p = redisClient.pipelined();
+        List<Response<Long>> responses = new ArrayList<Response<Long>>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            responses.add(p.incrBy(keys[i], values[i]));
+        }
+        p.sync();
+        long[] result = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Long value = responses.get(i).get();
+            result[i] = value != null ? value.longValue() : 0;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The script is loaded with {@code SCRIPT LOAD} on first use, and called
+     * with {@code EVALSHA}; it is loaded again if the server has lost it.
+     * </p>
+     */
+    @Override
+    public long[] atomicMultiIncBy(String[] keys, long[] values) {
+        List<String> keyList = new ArrayList<String>(keys.length);
+        List<String> args = new ArrayList<String>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            keyList.add(keys[i]);
+            args.add(String.valueOf(values[i]));
+        }
+        String sha = scriptMultiIncBySha;
+        if (sha == null) {
+            sha = scriptMultiIncBySha = redisClient.scriptLoad(SCRIPT_MULTI_INCRBY);
+        }
+        Object reply;
+        try {
+            reply = redisClient.evalsha(sha, keyList, args);
+        } catch (JedisNoScriptException e) {
+            sha = scriptMultiIncBySha = redisClient.scriptLoad(SCRIPT_MULTI_INCRBY);
+            reply = redisClient.evalsha(sha, keyList, args);
+        }
+        List<?> replies = (List<?>) reply;
+        long[] result = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = ((Number) replies.get(i)).longValue();
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,828 @@
+package com.appleframework.id.redis.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.appleframework.id.redis.IAsyncRedisClient;
+import com.appleframework.id.redis.IRedisClient;
+import com.appleframework.id.redis.MessageListener;
+
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+/**
+ * An implementation of {@link IRedisClient} that uses {@link RedisClient
+ * Lettuce https://lettuce.io/} as the underlying Redis client engine.
+ * 
+ * <p>
+ * Unlike {@link JedisRedisClient}, one instance is shared by all threads: its
+ * single non-blocking connection multiplexes the commands of all callers, and
+ * responses complete futures (see {@link #incByAsync(String, long)}). It is
+ * not pooled, {@link #close()} does nothing; call {@link #destroy()} when done.
+ * </p>
+ * 
+ * <p>
+ * Blocking list pops run on a short-lived connection of their own, so that
+ * they do not hold up the shared one.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class LettuceRedisClient implements IAsyncRedisClient {
+
+    private final static RedisCodec<String, byte[]> CODEC = RedisCodec.of(StringCodec.UTF8,
+            ByteArrayCodec.INSTANCE);
+
+    private static volatile String scriptMultiIncBySha;
+
+    private String redisHost = "localhost", redisUsername, redisPassword;
+    private int redisPort = DEFAULT_REDIS_PORT;
+    private RedisClient redisClient;
+    private StatefulRedisConnection<String, byte[]> connection;
+    private RedisCommands<String, byte[]> commands;
+    private RedisAsyncCommands<String, byte[]> asyncCommands;
+    private StatefulRedisPubSubConnection<String, byte[]> pubSubConnection;
+    private final ConcurrentMap<String, Set<MessageListener>> topicSubscriptions = new ConcurrentHashMap<String, Set<MessageListener>>();
+
+    protected String getRedisHost() {
+        return redisHost;
+    }
+
+    public LettuceRedisClient setRedisHost(String redisHost) {
+        this.redisHost = redisHost;
+        return this;
+    }
+
+    protected int getRedisPort() {
+        return redisPort;
+    }
+
+    public LettuceRedisClient setRedisPort(int redisPort) {
+        this.redisPort = redisPort;
+        return this;
+    }
+
+    protected String getRedisUsername() {
+        return redisUsername;
+    }
+
+    public LettuceRedisClient setRedisUsername(String redisUsername) {
+        this.redisUsername = redisUsername;
+        return this;
+    }
+
+    protected String getRedisPassword() {
+        return redisPassword;
+    }
+
+    public LettuceRedisClient setRedisPassword(String redisPassword) {
+        this.redisPassword = redisPassword;
+        return this;
+    }
+
+    public LettuceRedisClient init() {
+        RedisURI.Builder uri = RedisURI.builder().withHost(redisHost).withPort(redisPort)
+                .withTimeout(Duration.ofSeconds(DEFAULT_READ_TIMEOUT_SEC));
+        if (!StringUtils.isBlank(redisUsername)) {
+            // Redis 6 ACL user
+            uri.withAuthentication(redisUsername,
+                    redisPassword != null ? redisPassword : "");
+        } else if (!StringUtils.isBlank(redisPassword)) {
+            uri.withPassword(redisPassword.toCharArray());
+        }
+        redisClient = RedisClient.create(uri.build());
+        connection = redisClient.connect(CODEC);
+        commands = connection.sync();
+        asyncCommands = connection.async();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        try {
+            if (pubSubConnection != null) {
+                pubSubConnection.close();
+                pubSubConnection = null;
+            }
+            if (connection != null) {
+                connection.close();
+                connection = null;
+            }
+        } finally {
+            if (redisClient != null) {
+                redisClient.shutdown();
+                redisClient = null;
+            }
+        }
+    }
+
+    /**
+     * Does nothing: the connection is shared, see {@link #destroy()}.
+     */
+    @Override
+    public void close() {
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[][] encode(String[] values) {
+        byte[][] result = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = encode(values[i]);
+        }
+        return result;
+    }
+
+    private static String decode(byte[] value) {
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    private static List<String> decode(List<byte[]> values) {
+        List<String> result = new ArrayList<String>(values.size());
+        for (byte[] value : values) {
+            result.add(decode(value));
+        }
+        return result;
+    }
+
+    private static <T> T await(RedisFuture<T> future) {
+        try {
+            return future.get(DEFAULT_READ_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandExecutionException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new RedisCommandExecutionException(cause);
+        } catch (TimeoutException e) {
+            throw new RedisCommandExecutionException(e);
+        }
+    }
+
+    private static <T> List<T> awaitAll(List<RedisFuture<T>> futures) {
+        List<T> result = new ArrayList<T>(futures.size());
+        for (RedisFuture<T> future : futures) {
+            result.add(await(future));
+        }
+        return result;
+    }
+
+    /* API: single value */
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String ping() {
+        return connection != null && connection.isOpen() ? commands.ping() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long ttl(String key) {
+        Long result = commands.ttl(key);
+        return result != null ? result.longValue() : -2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void expire(String key, int ttlSeconds) {
+        if (ttlSeconds > 0) {
+            commands.expire(key, ttlSeconds);
+        } else if (ttlSeconds == TTL_PERSISTENT) {
+            commands.persist(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(String... keys) {
+        commands.del(keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(String key) {
+        return decode(commands.get(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> multiGet(String... keys) {
+        return decode(multiGetAsBinary(keys));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getAsBinary(String key) {
+        return commands.get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<byte[]> multiGetAsBinary(String... keys) {
+        List<RedisFuture<byte[]>> futures = new ArrayList<RedisFuture<byte[]>>(keys.length);
+        for (String key : keys) {
+            futures.add(asyncCommands.get(key));
+        }
+        return awaitAll(futures);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSet(String key, String value) {
+        return decode(commands.getset(key, encode(value)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSet(String key, byte[] value) {
+        return decode(commands.getset(key, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getSetAsBinary(String key, String value) {
+        return commands.getset(key, encode(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getSetAsBinary(String key, byte[] value) {
+        return commands.getset(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long decBy(String key, long value) {
+        Long result = commands.decrby(key, value);
+        return result != null ? result.longValue() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long incBy(String key, long value) {
+        Long result = commands.incrby(key, value);
+        return result != null ? result.longValue() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Long> incByAsync(String key, long value) {
+        return asyncCommands.incrby(key, value).toCompletableFuture();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] multiIncBy(String[] keys, long[] values) {
+        List<RedisFuture<Long>> futures = new ArrayList<RedisFuture<Long>>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            futures.add(asyncCommands.incrby(keys[i], values[i]));
+        }
+        List<Long> replies = awaitAll(futures);
+        long[] result = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Long value = replies.get(i);
+            result[i] = value != null ? value.longValue() : 0;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The script is loaded with {@code SCRIPT LOAD} on first use, and called
+     * with {@code EVALSHA}; it is loaded again if the server has lost it.
+     * </p>
+     */
+    @Override
+    public long[] atomicMultiIncBy(String[] keys, long[] values) {
+        byte[][] args = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            args[i] = encode(String.valueOf(values[i]));
+        }
+        String sha = scriptMultiIncBySha;
+        if (sha == null) {
+            sha = scriptMultiIncBySha = commands
+                    .scriptLoad(JedisRedisClient.SCRIPT_MULTI_INCRBY);
+        }
+        List<?> replies;
+        try {
+            replies = commands.evalsha(sha, ScriptOutputType.MULTI, keys, args);
+        } catch (RedisNoScriptException e) {
+            sha = scriptMultiIncBySha = commands.scriptLoad(JedisRedisClient.SCRIPT_MULTI_INCRBY);
+            replies = commands.evalsha(sha, ScriptOutputType.MULTI, keys, args);
+        }
+        long[] result = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = ((Number) replies.get(i)).longValue();
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(String key, String value, int ttlSeconds) {
+        set(key, encode(value), ttlSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(String key, byte[] value, int ttlSeconds) {
+        if (ttlSeconds > 0) {
+            commands.setex(key, ttlSeconds, value);
+        } else {
+            commands.set(key, value);
+        }
+    }
+
+    /* API: hash */
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hashDelete(String mapName, String... fieldName) {
+        commands.hdel(mapName, fieldName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long hashSize(String mapName) {
+        Long result = commands.hlen(mapName);
+        return result != null ? result.longValue() : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String hashGet(String mapName, String fieldName) {
+        return decode(commands.hget(mapName, fieldName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> hashMultiGet(String[] mapNames, String[] fieldNames) {
+        return decode(hashMultiGetAsBinary(mapNames, fieldNames));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] hashGetAsBinary(String mapName, String fieldName) {
+        return commands.hget(mapName, fieldName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<byte[]> hashMultiGetAsBinary(String[] mapNames, String[] fieldNames) {
+        if (mapNames.length != fieldNames.length) {
+            throw new IllegalArgumentException(
+                    "List of map names and list of field names must have same number of elements!");
+        }
+        List<RedisFuture<byte[]>> futures = new ArrayList<RedisFuture<byte[]>>(mapNames.length);
+        for (int i = 0; i < mapNames.length; i++) {
+            futures.add(asyncCommands.hget(mapNames[i], fieldNames[i]));
+        }
+        return awaitAll(futures);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> hashMGet(String mapName, String... fieldNames) {
+        return decode(hashMGetAsBinary(mapName, fieldNames));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<byte[]> hashMGetAsBinary(String mapName, String... fieldNames) {
+        List<KeyValue<String, byte[]>> values = commands.hmget(mapName, fieldNames);
+        List<byte[]> result = new ArrayList<byte[]>(values.size());
+        for (KeyValue<String, byte[]> value : values) {
+            result.add(value.getValueOrElse(null));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long hashIncBy(String mapName, String fieldName, long value) {
+        Long result = commands.hincrby(mapName, fieldName, value);
+        return result != null ? result.longValue() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long hashDecBy(String mapName, String fieldName, long value) {
+        return hashIncBy(mapName, fieldName, -value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hashSet(String mapName, String fieldName, String value, int ttlSeconds) {
+        hashSet(mapName, fieldName, encode(value), ttlSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void hashSet(String mapName, String fieldName, byte[] value, int ttlSeconds) {
+        commands.hset(mapName, fieldName, value);
+        expire(mapName, ttlSeconds);
+    }
+
+    /* API: list */
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void listPush(String listName, String... messages) {
+        listPush(listName, 0, messages);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void listPush(String listName, byte[]... messages) {
+        listPush(listName, 0, messages);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void listPush(String listName, int ttlSeconds, String... messages) {
+        listPush(listName, ttlSeconds, encode(messages));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void listPush(String listName, int ttlSeconds, byte[]... messages) {
+        commands.rpush(listName, messages);
+        expire(listName, ttlSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String listPop(String listName) {
+        return listPop(listName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String listPop(String listName, boolean block) {
+        return listPop(listName, block, DEFAULT_READ_TIMEOUT_SEC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String listPop(String listName, boolean block, int timeout) {
+        return decode(listPopAsBinary(listName, block, timeout));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] listPopAsBinary(String listName) {
+        return listPopAsBinary(listName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] listPopAsBinary(String listName, boolean block) {
+        return listPopAsBinary(listName, block, DEFAULT_READ_TIMEOUT_SEC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] listPopAsBinary(String listName, boolean block, int timeout) {
+        if (!block) {
+            return commands.lpop(listName);
+        }
+        StatefulRedisConnection<String, byte[]> blockingConnection = redisClient.connect(CODEC);
+        try {
+            blockingConnection.setTimeout(Duration.ofSeconds(timeout + DEFAULT_READ_TIMEOUT_SEC));
+            KeyValue<String, byte[]> result = blockingConnection.sync().blpop(timeout, listName);
+            return result != null ? result.getValueOrElse(null) : null;
+        } finally {
+            blockingConnection.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> listMembers(String listName) {
+        return decode(listMembersAsBinary(listName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<byte[]> listMembersAsBinary(String listName) {
+        return commands.lrange(listName, 0, -1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long listSize(String listName) {
+        Long size = commands.llen(listName);
+        return size != null ? size.longValue() : -1;
+    }
+
+    /* API: set */
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdd(String setName, String... messages) {
+        setAdd(setName, 0, messages);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdd(String setName, byte[]... messages) {
+        setAdd(setName, 0, messages);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdd(String setName, int ttlSeconds, String... messages) {
+        setAdd(setName, ttlSeconds, encode(messages));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdd(String setName, int ttlSeconds, byte[]... messages) {
+        commands.sadd(setName, messages);
+        expire(setName, ttlSeconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean setIsMember(String setName, String value) {
+        return setIsMember(setName, encode(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean setIsMember(String setName, byte[] value) {
+        Boolean result = commands.sismember(setName, value);
+        return result != null ? result.booleanValue() : false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String setPop(String setName) {
+        return decode(commands.spop(setName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] setPopAsBinary(String setName) {
+        return commands.spop(setName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> setMembers(String setName) {
+        Set<String> result = new HashSet<String>();
+        for (byte[] member : setMembersAsBinary(setName)) {
+            result.add(decode(member));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<byte[]> setMembersAsBinary(String setName) {
+        Set<byte[]> result = commands.smembers(setName);
+        return result != null ? result : new HashSet<byte[]>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRemove(String setName, String... member) {
+        setRemove(setName, encode(member));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRemove(String setName, byte[]... member) {
+        commands.srem(setName, member);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long setSize(String setName) {
+        Long size = commands.scard(setName);
+        return size != null ? size.longValue() : -1;
+    }
+
+    /* API: pub/sub */
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(String topic, String message) {
+        publish(topic, encode(message));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void publish(String topic, byte[] message) {
+        commands.publish(topic, message);
+    }
+
+    synchronized private StatefulRedisPubSubConnection<String, byte[]> pubSubConnection() {
+        if (pubSubConnection == null) {
+            pubSubConnection = redisClient.connectPubSub(CODEC);
+            pubSubConnection.addListener(new RedisPubSubAdapter<String, byte[]>() {
+                @Override
+                public void message(String channel, byte[] message) {
+                    Set<MessageListener> subscription = topicSubscriptions.get(channel);
+                    if (subscription != null) {
+                        for (MessageListener messageListener : subscription) {
+                            messageListener.onMessage(channel, message);
+                        }
+                    }
+                }
+            });
+        }
+        return pubSubConnection;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Does not block: messages are delivered on Lettuce's event loop.
+     * </p>
+     */
+    @Override
+    public boolean subscribe(String topic, MessageListener messageListener) {
+        Set<MessageListener> subscription = topicSubscriptions.get(topic);
+        if (subscription == null) {
+            topicSubscriptions.putIfAbsent(topic, ConcurrentHashMap
+                    .<MessageListener> newKeySet());
+            subscription = topicSubscriptions.get(topic);
+        }
+        synchronized (subscription) {
+            if (!subscription.add(messageListener)) {
+                return false;
+            }
+            if (subscription.size() == 1) {
+                pubSubConnection().sync().subscribe(topic);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean unsubscribe(String topic, MessageListener messageListener) {
+        Set<MessageListener> subscription = topicSubscriptions.get(topic);
+        if (subscription == null) {
+            return false;
+        }
+        synchronized (subscription) {
+            if (!subscription.remove(messageListener)) {
+                return false;
+            }
+            if (subscription.isEmpty()) {
+                pubSubConnection().sync().unsubscribe(topic);
+            }
+            return true;
+        }
+    }
+}
@@ -3,6 +3,15 @@ package com.appleframework.id;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -11,9 +20,12 @@ import junit.framework.TestSuite;
 import org.junit.After;
 import org.junit.Before;
 
+import com.appleframework.id.exception.IdException;
 import com.appleframework.id.redis.IRedisClient;
 import com.appleframework.id.redis.RedisClientFactory;
 
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.ClientKillParams;
 import redis.embedded.RedisServer;
 
 /**
@@ -96,4 +108,187 @@ public class TestRedisIdGenerator extends TestCase {
         assertEquals(1, idGenerator.nextId("default"));
         assertEquals(1, idGenerator.currentId("default"));
     }
+
+    @org.junit.Test
+    public void test4() throws Exception {
+        final RedisIdGenerator idGen = new RedisIdGenerator();
+        idGen.setRedisHost(REDIS_HOST).setRedisPort(REDIS_PORT).setCoalescing(true)
+                .setMaxBatchSize(32).init();
+        try {
+            final int numThreads = 16, numRuns = 500;
+            final Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+            final CountDownLatch latch = new CountDownLatch(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                final String namespace = t % 2 == 0 ? "even" : "odd";
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < numRuns; i++) {
+                                long id = idGen.reserveIds(namespace, 2);
+                                ids.put(namespace.equals("even") ? id : -id, id);
+                            }
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }).start();
+            }
+            latch.await();
+            assertEquals(numThreads * numRuns, ids.size());
+            assertEquals(numThreads * numRuns, idGen.currentId("even"));
+            assertEquals(numThreads * numRuns, idGen.currentId("odd"));
+            assertEquals(numThreads * numRuns + 1, idGen.nextId("odd"));
+        } finally {
+            idGen.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void test5() throws Exception {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("order", 1);
+        counts.put("order_item", 3);
+        Map<String, Long> result = idGenerator.reserveIds(counts);
+        assertEquals(1, result.get("order").longValue());
+        assertEquals(3, result.get("order_item").longValue());
+
+        // script lost by the server
+        Jedis jedis = new Jedis(REDIS_HOST, REDIS_PORT);
+        try {
+            jedis.scriptFlush();
+        } finally {
+            jedis.close();
+        }
+        result = idGenerator.reserveIds(counts);
+        assertEquals(2, result.get("order").longValue());
+        assertEquals(6, result.get("order_item").longValue());
+
+        idGenerator.setScripting(false);
+        try {
+            result = idGenerator.reserveIds(counts);
+            assertEquals(3, result.get("order").longValue());
+            assertEquals(9, result.get("order_item").longValue());
+        } finally {
+            idGenerator.setScripting(true);
+        }
+    }
+
+    @org.junit.Test
+    public void test6() throws Exception {
+        final RedisIdGenerator idGen = new RedisIdGenerator();
+        idGen.setRedisHost(REDIS_HOST).setRedisPort(REDIS_PORT).setConnectionStripes(2)
+                .setHealthCheckIntervalMs(100).init();
+        try {
+            final int numThreads = 8, numRuns = 200;
+            final Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+            final CountDownLatch latch = new CountDownLatch(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < numRuns; i++) {
+                                long id = idGen.nextId("striped");
+                                ids.put(id, id);
+                            }
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }).start();
+            }
+            latch.await();
+            assertEquals(numThreads * numRuns, ids.size());
+            assertEquals(numThreads * numRuns, idGen.currentId("striped"));
+
+            // connections killed by the server are replaced in background
+            Jedis jedis = new Jedis(REDIS_HOST, REDIS_PORT);
+            try {
+                assertTrue(jedis.clientKill(new ClientKillParams().type(
+                        ClientKillParams.Type.NORMAL)) > 0);
+            } finally {
+                jedis.close();
+            }
+            Thread.sleep(500);
+            assertEquals(numThreads * numRuns + 1, idGen.nextId("striped"));
+        } finally {
+            idGen.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void test7() throws Exception {
+        RedisIdGenerator idGen = new RedisIdGenerator();
+        idGen.setRedisHost(REDIS_HOST).setRedisPort(REDIS_PORT).setMultiplexed(true).init();
+        try {
+            final int numCalls = 10000;
+            List<CompletableFuture<Long>> futures = new ArrayList<CompletableFuture<Long>>();
+            for (int i = 0; i < numCalls; i++) {
+                futures.add(idGen.nextIdAsync("multiplexed"));
+            }
+            Map<Long, Long> ids = new HashMap<Long, Long>();
+            for (CompletableFuture<Long> future : futures) {
+                long id = future.get().longValue();
+                ids.put(id, id);
+            }
+            assertEquals(numCalls, ids.size());
+            assertEquals(numCalls, idGen.currentId("multiplexed"));
+            assertEquals(numCalls + 3, idGen.reserveIdsAsync("multiplexed", 3).get()
+                    .longValue());
+            assertEquals(numCalls + 4, idGen.nextId("multiplexed"));
+
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            counts.put("order", 1);
+            counts.put("order_item", 3);
+            Map<String, Long> result = idGen.reserveIds(counts);
+            assertEquals(1, result.get("order").longValue());
+            assertEquals(3, result.get("order_item").longValue());
+
+            assertTrue(idGen.setValue("multiplexed", 100));
+            assertEquals(101, idGen.nextIdAsync("multiplexed").get().longValue());
+        } finally {
+            idGen.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void test8() throws Exception {
+        final RedisIdGenerator idGen = new RedisIdGenerator();
+        idGen.setRedisHost(REDIS_HOST).setRedisPort(REDIS_PORT).setCoalescing(true)
+                .setMaxBatchSize(4).init();
+        final int numThreads = 16;
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(numThreads);
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        for (;;) {
+                            idGen.nextId("destroyed");
+                        }
+                    } catch (IdException e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        started.await();
+        Thread.sleep(200);
+        idGen.destroy();
+        // every caller is released, none waits for its full timeout
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(numThreads, failed.get());
+        try {
+            idGen.nextId("destroyed");
+            fail("destroyed");
+        } catch (IdException.OperationFailedException e) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,149 @@
+package com.appleframework.id.redis;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.junit.Before;
+
+/**
+ * Test case for {@link RedisClientPool}, with stand-in clients (no Redis
+ * server needed).
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestRedisClientPool extends TestCase {
+
+    private final static int NUM_BORROWERS = 256;
+
+    private final AtomicInteger numCreated = new AtomicInteger();
+    private final AtomicInteger numDestroyed = new AtomicInteger();
+    private RedisClientPool<IRedisClient> pool;
+
+    public static Test suite() {
+        return new TestSuite(TestRedisClientPool.class);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        numCreated.set(0);
+        numDestroyed.set(0);
+        pool = new RedisClientPool<IRedisClient>(new BasePooledObjectFactory<IRedisClient>() {
+            @Override
+            public IRedisClient create() {
+                numCreated.incrementAndGet();
+                return (IRedisClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { IRedisClient.class }, new InvocationHandler() {
+                            @Override
+                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                if (method.getName().equals("hashCode")) {
+                                    return System.identityHashCode(proxy);
+                                }
+                                if (method.getName().equals("equals")) {
+                                    return proxy == args[0];
+                                }
+                                return null;
+                            }
+                        });
+            }
+
+            @Override
+            public PooledObject<IRedisClient> wrap(IRedisClient redisClient) {
+                return new DefaultPooledObject<IRedisClient>(redisClient);
+            }
+
+            @Override
+            public void destroyObject(PooledObject<IRedisClient> redisClient) {
+                numDestroyed.incrementAndGet();
+            }
+        }, new PoolConfig().setMaxActive(NUM_BORROWERS).setMaxIdle(NUM_BORROWERS)
+                .setMinIdle(0).setTestOnBorrow(false));
+        pool.init();
+    }
+
+    /**
+     * Runs borrowers concurrently; each borrows {@code numRuns} times, the last
+     * client is kept borrowed until {@code release} opens.
+     */
+    private void runBorrowers(final int numRuns, final CountDownLatch borrowed,
+            final CountDownLatch release, final CountDownLatch done,
+            final AtomicReference<Throwable> error) {
+        for (int t = 0; t < NUM_BORROWERS; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        IRedisClient redisClient = null;
+                        for (int i = 0; i < numRuns; i++) {
+                            if (redisClient != null) {
+                                pool.returnObject(redisClient);
+                            }
+                            redisClient = pool.borrowObject();
+                        }
+                        borrowed.countDown();
+                        release.await();
+                        // returned after close()
+                        pool.returnObject(redisClient);
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                        borrowed.countDown();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+    }
+
+    @org.junit.Test
+    public void test1() throws Exception {
+        final CountDownLatch borrowed = new CountDownLatch(NUM_BORROWERS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(NUM_BORROWERS);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        runBorrowers(200, borrowed, release, done, error);
+        borrowed.await();
+        assertNull(error.get());
+        assertEquals(NUM_BORROWERS, pool.getNumActive());
+
+        pool.close();
+        // all borrowed clients invalidated
+        assertEquals(numCreated.get(), numDestroyed.get());
+        release.countDown();
+        done.await();
+        assertNull(error.get());
+        assertEquals(numCreated.get(), numDestroyed.get());
+    }
+
+    @org.junit.Test
+    public void test2() throws Exception {
+        for (int run = 0; run < 5; run++) {
+            setUp();
+            final CountDownLatch borrowed = new CountDownLatch(NUM_BORROWERS);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(NUM_BORROWERS);
+            final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+            runBorrowers(50, borrowed, release, done, error);
+            release.countDown();
+            // close while borrowers are still running
+            Thread.sleep(run);
+            pool.close();
+            done.await();
+            Throwable e = error.get();
+            assertTrue(String.valueOf(e), e == null || e instanceof IllegalStateException);
+            assertEquals(0, pool.getNumActive());
+            assertEquals(numCreated.get(), numDestroyed.get());
+        }
+    }
+}
@@ -38,15 +38,29 @@ public class BenchmarkRedis extends BaseBenchmarkSerialId {
             redisPort = 6379;
         }
 
+        boolean coalescing = Boolean.parseBoolean(System.getProperty("coalescing"));
+        boolean multiplexed = Boolean.parseBoolean(System.getProperty("multiplexed"));
+        int connectionStripes;
+        try {
+            connectionStripes = Integer.parseInt(System.getProperty("connectionStripes"));
+        } catch (Exception e) {
+            connectionStripes = 0;
+        }
+
         System.out.println("Num runs: " + numRuns + " / Num threads: " + numThreads
                 + " / Num namespaces: " + numNamespaces);
-        System.out.println("Redis host: " + redisHost + " / Redis port: " + redisPort);
+        System.out.println("Redis host: " + redisHost + " / Redis port: " + redisPort
+                + " / Coalescing: " + coalescing + " / Connection stripes: " + connectionStripes
+                + " / Multiplexed: " + multiplexed);
 
         RedisIdGenerator.invalidate();
         final PoolConfig poolConfig = new PoolConfig();
         poolConfig.setMaxActive(8192).setTestOnBorrow(true);
-        final RedisIdGenerator idGenerator = RedisIdGenerator.getInstance(redisHost, redisPort,
-                poolConfig);
+        final RedisIdGenerator idGenerator = coalescing || connectionStripes > 0 || multiplexed ? new RedisIdGenerator()
+                .setRedisHost(redisHost).setRedisPort(redisPort).setRedisPoolConfig(poolConfig)
+                .setCoalescing(coalescing).setConnectionStripes(connectionStripes)
+                .setMultiplexed(multiplexed).init()
+                : RedisIdGenerator.getInstance(redisHost, redisPort, poolConfig);
 
         initValues(idGenerator, numNamespaces);
 
@@ -0,0 +1,104 @@
+package test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.appleframework.id.RedisIdGenerator;
+import com.appleframework.id.redis.IRedisClient;
+import com.appleframework.id.redis.PoolConfig;
+import com.appleframework.id.redis.RedisClientFactory;
+import com.appleframework.id.redis.impl.JedisClientPool;
+
+import redis.embedded.RedisServer;
+
+/**
+ * JMH comparison of the pool lookup by configuration that used to run on every
+ * {@link RedisIdGenerator#nextId(String)} (pool name building and cache
+ * lookup), against borrowing from a pool resolved once, and against a whole
+ * {@code nextId} on a local (embedded) Redis.
+ * 
+ * <pre>
+ * java -cp ... test.benchmark.JmhRedisPoolLookup
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JmhRedisPoolLookup {
+
+    private final static int REDIS_PORT = 16380;
+
+    private RedisServer redisServer;
+    private RedisClientFactory redisFactory;
+    private PoolConfig poolConfig;
+    private JedisClientPool redisClientPool;
+    private RedisIdGenerator idGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        redisServer = RedisServer.builder().port(REDIS_PORT).setting("save \"\"").build();
+        redisServer.start();
+        redisFactory = RedisClientFactory.newFactory();
+        poolConfig = new PoolConfig();
+        redisClientPool = redisFactory.getRedisClientPool("localhost", REDIS_PORT, null, null,
+                poolConfig);
+        idGenerator = new RedisIdGenerator();
+        idGenerator.setRedisPort(REDIS_PORT).setRedisPoolConfig(poolConfig).init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        idGenerator.destroy();
+        redisFactory.destroy();
+        redisServer.stop();
+    }
+
+    /**
+     * Former per-call path: resolve the pool by configuration, then borrow.
+     */
+    @Benchmark
+    public void lookupAndBorrow() {
+        IRedisClient redisClient = redisFactory.getRedisClient("localhost", REDIS_PORT, null, null,
+                poolConfig);
+        redisClient.close();
+    }
+
+    /**
+     * Borrow from a pool resolved once.
+     */
+    @Benchmark
+    public void borrow() throws Exception {
+        IRedisClient redisClient = redisClientPool.borrowObject();
+        redisClient.close();
+    }
+
+    @Benchmark
+    public long nextId() {
+        return idGenerator.nextId("default");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(JmhRedisPoolLookup.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,10 +1,17 @@
 package com.appleframework.id;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import org.redisson.Redisson;
 import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
 import org.slf4j.Logger;
@@ -83,8 +90,46 @@ public class RedissonIdGenerator extends SerialIdGenerator implements IdentityGe
      */
     @Override
     public long nextId(final String namespace) {
+    	return reserveIds(namespace, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public long reserveIds(final String namespace, final int count) {
+    	checkCount(count);
     	RAtomicLong ra = redisson.getAtomicLong(namespace);
-    	return ra.incrementAndGet();
+    	return ra.addAndGet(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * All namespaces are served in one {@link RBatch} round trip.
+     * </p>
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+    	SortedMap<String, Integer> sorted = sortedCounts(counts);
+    	RBatch batch = redisson.createBatch();
+    	List<RFuture<Long>> futures = new ArrayList<RFuture<Long>>(sorted.size());
+    	for (Map.Entry<String, Integer> entry : sorted.entrySet()) {
+    		futures.add(batch.getAtomicLong(entry.getKey()).addAndGetAsync(
+    				entry.getValue().longValue()));
+    	}
+    	batch.execute();
+    	Map<String, Long> result = new LinkedHashMap<String, Long>();
+    	int i = 0;
+    	for (String namespace : sorted.keySet()) {
+    		result.put(namespace, futures.get(i++).getNow());
+    	}
+    	return result;
     }
 
     /**
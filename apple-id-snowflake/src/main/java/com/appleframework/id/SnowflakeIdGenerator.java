@@ -1,11 +1,20 @@
 package com.appleframework.id;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
-import com.appleframework.id.utils.HttpRequestUtil;
+import com.appleframework.id.exception.IdException;
+import com.appleframework.id.node.ConfigNodeIdProvider;
+import com.appleframework.id.utils.Base32Util;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -48,26 +57,58 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 					return idGen;
 				}
 			});
-	private static long macAddr = 0;
-	private static String LEAF_SERVER = "http://id.appleframework.com";
-	static {
-		try {
-			String result = null;
-			for (int i = 0; i < 3; i++) {
-				if(null == result || result.length() == 0) {
-					result = HttpRequestUtil.sendGet(LEAF_SERVER + "/api/segment/get/apple");
-				} else {
-					break;
+	private static volatile NodeIdProvider nodeIdProvider = new ConfigNodeIdProvider();
+	private static volatile long defaultNodeId = -1;
+
+	/**
+	 * Sets the {@link NodeIdProvider} that resolves the node id used by
+	 * {@link #getInstance()}.
+	 * 
+	 * <p>
+	 * Default: node id from configuration only (see
+	 * {@link ConfigNodeIdProvider}); {@link #getInstance()} fails if none is
+	 * configured, rather than guessing an id that other nodes may share. Nodes
+	 * without a configured id can lease one, e.g. with
+	 * {@code FileNodeIdProvider} or {@code ZookeeperNodeIdProvider}.
+	 * </p>
+	 * 
+	 * @param provider
+	 * @since 1.0.0
+	 */
+	public static void setNodeIdProvider(NodeIdProvider provider) {
+		synchronized (SnowflakeIdGenerator.class) {
+			nodeIdProvider = provider;
+			defaultNodeId = -1;
+		}
+	}
+
+	/**
+	 * Gets the node id used by {@link #getInstance()}, resolving it on first
+	 * call.
+	 * 
+	 * @return
+	 * @since 1.0.0
+	 */
+	public static long getDefaultNodeId() {
+		long nodeId = defaultNodeId;
+		if (nodeId < 0) {
+			synchronized (SnowflakeIdGenerator.class) {
+				nodeId = defaultNodeId;
+				if (nodeId < 0) {
+					nodeId = nodeIdProvider.getNodeId();
+					if (nodeId < 0) {
+						throw new IdException.OperationFailedException(
+								"Cannot resolve node id: set system property ["
+										+ ConfigNodeIdProvider.DEFAULT_PROPERTY_NAME
+										+ "] or environment variable ["
+										+ ConfigNodeIdProvider.DEFAULT_ENV_NAME
+										+ "], or lease one with setNodeIdProvider()");
+					}
+					defaultNodeId = nodeId;
 				}
 			}
-			if(null != result && result.length() > 0) {
-				macAddr = Integer.parseInt(result);
-			} else {
-				macAddr = System.currentTimeMillis();
-			}
-		} catch (Exception e) {
-			macAddr = System.currentTimeMillis();
 		}
+		return nodeId;
 	}
 
 	/**
@@ -76,7 +117,23 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * @return
 	 */
 	public static SnowflakeIdGenerator getInstance() {
-		return getInstance(macAddr);
+		return getInstance(getDefaultNodeId());
+	}
+
+	/**
+	 * Gets an {@link SnowflakeIdGenerator} instance for the node id resolved by
+	 * a {@link NodeIdProvider}.
+	 * 
+	 * @param provider
+	 * @return
+	 * @since 1.0.0
+	 */
+	public static SnowflakeIdGenerator getInstance(NodeIdProvider provider) {
+		long nodeId = provider.getNodeId();
+		if (nodeId < 0) {
+			throw new IdException.OperationFailedException("Cannot resolve node id!");
+		}
+		return getInstance(nodeId);
 	}
 
 	/**
@@ -93,26 +150,6 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 		}
 	}
 
-	private final static long MASK_TIMESTAMP_MINI = 0x1FFFFFFFFFFL; // 41 bits
-	private final static long MASK_NODE_ID_MINI = 0x0L; // 0 bits
-	private final static long MASK_SEQUENCE_MINI = 0x7FL; // 7 bits
-	private final static long MAX_SEQUENCE_MINI = 0x7FL; // 7 bits
-	private final static long SHIFT_TIMESTAMP_MINI = 7L;
-	private final static long SHIFT_NODE_ID_MINI = 7L;
-
-	private final static long MASK_TIMESTAMP_48 = 0xFFFFFFFFL; // 32 bits
-	private final static long MASK_NODE_ID_48 = 0x7L; // 3 bits
-	private final static long MASK_SEQUENCE_48 = 0x1FFFL; // 13 bits
-	private final static long MAX_SEQUENCE_48 = 0x1FFFL; // 13 bits
-	private final static long SHIFT_TIMESTAMP_48 = 16L;
-	private final static long SHIFT_NODE_ID_48 = 13L;
-
-	private final static long MASK_TIMESTAMP_64 = 0x1FFFFFFFFFFL; // 41 bits
-	private final static long MASK_NODE_ID_64 = 0x3FFL; // 10 bits
-	private final static long MASK_SEQUENCE_64 = 0x1FFFL; // 13 bits
-	private final static long MAX_SEQUENCE_64 = 0x1FFFL; // 13 bits
-	private final static long SHIFT_TIMESTAMP_64 = 23L;
-	private final static long SHIFT_NODE_ID_64 = 13L;
 	// private final static long TIMESTAMP_EPOCH = 1330534800000L; // 1-Mar-2012
 	// GMT+7
 	// public final static long TIMESTAMP_EPOCH = 1362070800000L; // 1-Mar-2013
@@ -126,12 +163,41 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	private final static long SHIFT_NODE_ID_128 = 16L;
 
 	private long nodeId;
-	private long template48, template64, templateMini;
-	private BigInteger template128;
-	private AtomicLong sequenceMillisec = new AtomicLong();
-	private AtomicLong sequenceSecond = new AtomicLong();
-	private AtomicLong lastTimestampMillisec = new AtomicLong();
-	private AtomicLong lastTimestampSecond = new AtomicLong();
+	private long template128;
+
+	/*
+	 * Generator state is packed into a single long so that it can be advanced
+	 * with one CAS: <42-bit: tick><22-bit: sequence number>
+	 */
+	final static int STATE_SEQUENCE_BITS = 22;
+	final static long STATE_SEQUENCE_MASK = (1L << STATE_SEQUENCE_BITS) - 1;
+
+	/**
+	 * {@link AtomicLong} padded so that states of different formats do not
+	 * share a cache line.
+	 */
+	@SuppressWarnings("serial")
+	static class PaddedAtomicLong extends AtomicLong {
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	/*
+	 * Each format has its own state: different formats are different id
+	 * spaces, and do not contend with each other.
+	 */
+	private final AtomicLong state64 = new PaddedAtomicLong();
+	private final AtomicLong state48 = new PaddedAtomicLong();
+	private final AtomicLong stateMini = new PaddedAtomicLong();
+	private final AtomicLong state128 = new PaddedAtomicLong();
+	private final AtomicLong stateUuid7 = new PaddedAtomicLong();
+	private final AtomicLong stateUlid = new PaddedAtomicLong();
+	private final AtomicLong stateTiny = new PaddedAtomicLong();
+	private final ConcurrentMap<SnowflakeLayout, AtomicLong> stateLayouts = new ConcurrentHashMap<SnowflakeLayout, AtomicLong>();
+
+	private volatile long maxBorrowMillis = 0;
+	private final LongAdder borrowedTicks = new LongAdder();
+	private final LongAdder clockBehindCount = new LongAdder();
+	private final LongAdder waitCount = new LongAdder();
 
 	/**
 	 * Constructs a new {@link SnowflakeIdGenerator} instance with specified
@@ -144,16 +210,73 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	}
 
 	protected void init() {
-		this.templateMini = (this.nodeId & MASK_NODE_ID_MINI) << SHIFT_NODE_ID_MINI;
-		this.template64 = (this.nodeId & MASK_NODE_ID_64) << SHIFT_NODE_ID_64;
-		this.template48 = (this.nodeId & MASK_NODE_ID_48) << SHIFT_NODE_ID_48;
-		this.template128 = BigInteger.valueOf((this.nodeId & MASK_NODE_ID_128) << SHIFT_NODE_ID_128);
+		this.template128 = (this.nodeId & MASK_NODE_ID_128) << SHIFT_NODE_ID_128;
 	}
 
 	protected void destroy() {
 		// EMPTY
 	}
 
+	public long getNodeId() {
+		return nodeId;
+	}
+
+	public long getMaxBorrowMillis() {
+		return maxBorrowMillis;
+	}
+
+	/**
+	 * Allows the generator to run ahead of the wall clock by up to
+	 * {@code maxBorrowMillis} milliseconds.
+	 * 
+	 * <p>
+	 * When the sequence of the current tick is exhausted (during a burst, or
+	 * while the clock has been stepped backward), the generator moves its
+	 * logical clock to the next tick instead of waiting, as long as it stays
+	 * within {@code maxBorrowMillis} of the wall clock. Default {@code 0}:
+	 * never borrow.
+	 * </p>
+	 * 
+	 * @param maxBorrowMillis
+	 * @return
+	 * @since 1.0.0
+	 */
+	public SnowflakeIdGenerator setMaxBorrowMillis(long maxBorrowMillis) {
+		this.maxBorrowMillis = maxBorrowMillis < 0 ? 0 : maxBorrowMillis;
+		return this;
+	}
+
+	/**
+	 * Number of ticks the logical clock has been moved ahead of the wall clock.
+	 * 
+	 * @return
+	 * @since 1.0.0
+	 */
+	public long getBorrowedTicks() {
+		return borrowedTicks.sum();
+	}
+
+	/**
+	 * Number of ids generated while the wall clock was behind the logical
+	 * clock (clock stepped backward, or time borrowed).
+	 * 
+	 * @return
+	 * @since 1.0.0
+	 */
+	public long getClockBehindCount() {
+		return clockBehindCount.sum();
+	}
+
+	/**
+	 * Number of times generation had to wait for the wall clock.
+	 * 
+	 * @return
+	 * @since 1.0.0
+	 */
+	public long getWaitCount() {
+		return waitCount.sum();
+	}
+
 	/**
 	 * Waits till clock moves to the next millisecond.
 	 * 
@@ -163,7 +286,13 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	public static long waitTillNextMillisec(long currentMillisec) {
 		long nextMillisec = System.currentTimeMillis();
 		for (; nextMillisec <= currentMillisec; nextMillisec = System.currentTimeMillis()) {
-			Thread.yield();
+			long gap = currentMillisec - nextMillisec;
+			if (gap > 1) {
+				// clock stepped backward: park instead of spinning
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(gap - 1));
+			} else {
+				Thread.yield();
+			}
 		}
 		return nextMillisec;
 	}
@@ -204,6 +333,63 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 		return nextBlock;
 	}
 
+	/**
+	 * Advances a packed generator state to the next sequence number, lock-free.
+	 * 
+	 * <p>
+	 * The state keeps a monotonic logical clock: the sequence is reset when the
+	 * wall clock moves past the last tick; if it has not moved (or moved
+	 * backward), the sequence keeps increasing on the last tick. When it is
+	 * exhausted, the logical clock borrows the next tick if that stays within
+	 * {@link #getMaxBorrowMillis()} of the wall clock, otherwise waits till
+	 * the wall clock moves past the last tick.
+	 * </p>
+	 * 
+	 * @param state
+	 * @param tickSize
+	 *            tick size in milliseconds
+	 * @param maxSequence
+	 * @return the new state: <42-bit: tick><22-bit: sequence number>
+	 */
+	long nextState(final AtomicLong state, final long tickSize, final long maxSequence) {
+		for (;;) {
+			long current = state.get();
+			long lastTick = current >>> STATE_SEQUENCE_BITS;
+			long tick = System.currentTimeMillis() / tickSize;
+			long next;
+			if (tick > lastTick) {
+				// reset sequence
+				next = tick << STATE_SEQUENCE_BITS;
+			} else if ((current & STATE_SEQUENCE_MASK) < maxSequence) {
+				// increase sequence
+				next = current + 1;
+			} else if ((lastTick + 1 - tick) * tickSize <= maxBorrowMillis) {
+				// borrow the next tick
+				next = (lastTick + 1) << STATE_SEQUENCE_BITS;
+				if (state.compareAndSet(current, next)) {
+					borrowedTicks.increment();
+					clockBehindCount.increment();
+					return next;
+				}
+				continue;
+			} else {
+				waitCount.increment();
+				if (tickSize == 1) {
+					waitTillNextMillisec(lastTick);
+				} else {
+					waitTillNextTick(lastTick, tickSize);
+				}
+				continue;
+			}
+			if (state.compareAndSet(current, next)) {
+				if (tick < lastTick) {
+					clockBehindCount.increment();
+				}
+				return next;
+			}
+		}
+	}
+
 	/* tiny id */
 	/**
 	 * Extracts the (UNIX) timestamp from a tiny id.
@@ -230,28 +416,14 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * 
 	 * @return
 	 */
-	synchronized public long generateIdTiny() {
+	public long generateIdTiny() {
 		final long division = 10000L; // block 10000 ms
 		final long seqBits = 16L;
 		final long maxSeqTiny = 0xFFFFL; // 16 bits
 
-		long timestamp = System.currentTimeMillis() / division;
-		long sequence = 0;
-		if (timestamp == this.lastTimestampSecond.get()) {
-			// increase sequence
-			sequence = this.sequenceSecond.incrementAndGet();
-			if (sequence > maxSeqTiny) {
-				// reset sequence
-				this.sequenceSecond.set(0);
-				waitTillNextTick(timestamp, division);
-				return generateIdTiny();
-			}
-		} else {
-			// reset sequence
-			this.sequenceSecond.set(sequence);
-			this.lastTimestampSecond.set(timestamp);
-		}
-		timestamp -= TIMESTAMP_EPOCH / division;
+		long state = nextState(this.stateTiny, division, maxSeqTiny);
+		long timestamp = (state >>> STATE_SEQUENCE_BITS) - TIMESTAMP_EPOCH / division;
+		long sequence = state & STATE_SEQUENCE_MASK;
 		long result = timestamp;
 		if (sequence != 0) {
 			result = (result << seqBits) | sequence;
@@ -270,8 +442,7 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * @return the UNIX timestamp (milliseconds)
 	 */
 	public static long extractTimestamp48(long id48) {
-		long timestamp = (id48 >>> SHIFT_TIMESTAMP_48) + TIMESTAMP_EPOCH;
-		return timestamp;
+		return SnowflakeLayout.ID_48.extractTimestamp(id48);
 	}
 
 	/**
@@ -283,26 +454,8 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * 
 	 * @return
 	 */
-	synchronized public long generateId48() {
-		long timestamp = System.currentTimeMillis();
-		long sequence = 0;
-		if (timestamp == this.lastTimestampMillisec.get()) {
-			// increase sequence
-			sequence = this.sequenceMillisec.incrementAndGet();
-			if (sequence > MAX_SEQUENCE_48) {
-				// reset sequence
-				this.sequenceMillisec.set(0);
-				waitTillNextMillisec(timestamp);
-				return generateId48();
-			}
-		} else {
-			// reset sequence
-			this.sequenceMillisec.set(sequence);
-			this.lastTimestampMillisec.set(timestamp);
-		}
-		timestamp = (timestamp - TIMESTAMP_EPOCH) & MASK_TIMESTAMP_48;
-		long result = timestamp << SHIFT_TIMESTAMP_48 | template48 | (sequence & MASK_SEQUENCE_48);
-		return result;
+	public long generateId48() {
+		return generateId(SnowflakeLayout.ID_48);
 	}
 
 	/* 48-bit id */
@@ -315,8 +468,7 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * @return the UNIX timestamp (milliseconds)
 	 */
 	public static long extractTimestampMini(long idMini) {
-		long timestamp = (idMini >>> SHIFT_TIMESTAMP_MINI) + TIMESTAMP_EPOCH;
-		return timestamp;
+		return SnowflakeLayout.ID_MINI.extractTimestamp(idMini);
 	}
 
 	/**
@@ -328,26 +480,8 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * 
 	 * @return
 	 */
-	synchronized public long generateIdMini() {
-		long timestamp = System.currentTimeMillis();
-		long sequence = 0;
-		if (timestamp == this.lastTimestampMillisec.get()) {
-			// increase sequence
-			sequence = this.sequenceMillisec.incrementAndGet();
-			if (sequence > MAX_SEQUENCE_MINI) {
-				// reset sequence
-				this.sequenceMillisec.set(0);
-				waitTillNextMillisec(timestamp);
-				return generateIdMini();
-			}
-		} else {
-			// reset sequence
-			this.sequenceMillisec.set(sequence);
-			this.lastTimestampMillisec.set(timestamp);
-		}
-		timestamp = (timestamp - TIMESTAMP_EPOCH) & MASK_TIMESTAMP_MINI;
-		long result = timestamp << SHIFT_TIMESTAMP_MINI | templateMini | (sequence & MASK_SEQUENCE_MINI);
-		return result;
+	public long generateIdMini() {
+		return generateId(SnowflakeLayout.ID_MINI);
 	}
 
 	/* mini id */
@@ -360,9 +494,7 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * @return the UNIX timestamp (milliseconds)
 	 */
 	public static long extractTimestamp64(long id64) {
-		// use >>> for unsigned number
-		long timestamp = (id64 >>> SHIFT_TIMESTAMP_64) + TIMESTAMP_EPOCH;
-		return timestamp;
+		return SnowflakeLayout.ID_64.extractTimestamp(id64);
 	}
 
 	/**
@@ -374,29 +506,52 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * 
 	 * @return
 	 */
-	synchronized public long generateId64() {
-		long timestamp = System.currentTimeMillis();
-		long sequence = 0;
-		if (timestamp == this.lastTimestampMillisec.get()) {
-			// increase sequence
-			sequence = this.sequenceMillisec.incrementAndGet();
-			if (sequence > MAX_SEQUENCE_64) {
-				// reset sequence
-				this.sequenceMillisec.set(0);
-				waitTillNextMillisec(timestamp);
-				return generateId64();
+	public long generateId64() {
+		return generateId(SnowflakeLayout.ID_64);
+	}
+
+	/* 64-bit id */
+
+	/* custom layout */
+
+	/**
+	 * Generates an id with a custom bit layout.
+	 * 
+	 * <p>
+	 * Each layout has its own sequence; ids of different layouts may collide.
+	 * </p>
+	 * 
+	 * @param layout
+	 * @return
+	 * @since 1.0.0
+	 */
+	public long generateId(SnowflakeLayout layout) {
+		long next = nextState(layoutState(layout), layout.getTickMillis(), layout.getMaxSequence());
+		return layout.encode(next >>> STATE_SEQUENCE_BITS, nodeId, next & STATE_SEQUENCE_MASK);
+	}
+
+	private AtomicLong layoutState(SnowflakeLayout layout) {
+		if (layout == SnowflakeLayout.ID_64) {
+			return state64;
+		}
+		if (layout == SnowflakeLayout.ID_48) {
+			return state48;
+		}
+		if (layout == SnowflakeLayout.ID_MINI) {
+			return stateMini;
+		}
+		AtomicLong state = stateLayouts.get(layout);
+		if (state == null) {
+			AtomicLong newState = new PaddedAtomicLong();
+			state = stateLayouts.putIfAbsent(layout, newState);
+			if (state == null) {
+				state = newState;
 			}
-		} else {
-			// reset sequence
-			this.sequenceMillisec.set(sequence);
-			this.lastTimestampMillisec.set(timestamp);
 		}
-		timestamp = (timestamp - TIMESTAMP_EPOCH) & MASK_TIMESTAMP_64;
-		long result = timestamp << SHIFT_TIMESTAMP_64 | template64 | (sequence & MASK_SEQUENCE_64);
-		return result;
+		return state;
 	}
 
-	/* 64-bit id */
+	/* custom layout */
 
 	/* 128-bit id */
 
@@ -411,6 +566,60 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 		return result.longValue();
 	}
 
+	/**
+	 * Extracts the (UNIX) timestamp from a 128-bit id stored as a pair of
+	 * longs {@code [high, low]}.
+	 * 
+	 * @param id128
+	 * @param offset
+	 *            index of the high long
+	 * @return the UNIX timestamp (milliseconds)
+	 * @since 1.0.0
+	 */
+	public static long extractTimestamp128(long[] id128, int offset) {
+		return id128[offset];
+	}
+
+	/**
+	 * Extracts the (UNIX) timestamp from a 128-bit id stored as 16 big-endian
+	 * bytes.
+	 * 
+	 * @param id128
+	 * @param offset
+	 *            index of the first byte
+	 * @return the UNIX timestamp (milliseconds)
+	 * @since 1.0.0
+	 */
+	public static long extractTimestamp128(byte[] id128, int offset) {
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (id128[offset + i] & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Extracts the node id from the low long of a 128-bit id.
+	 * 
+	 * @param low128
+	 * @return
+	 * @since 1.0.0
+	 */
+	public static long extractNodeId128(long low128) {
+		return (low128 >>> SHIFT_NODE_ID_128) & MASK_NODE_ID_128;
+	}
+
+	/**
+	 * Extracts the sequence number from the low long of a 128-bit id.
+	 * 
+	 * @param low128
+	 * @return
+	 * @since 1.0.0
+	 */
+	public static long extractSequence128(long low128) {
+		return low128 & MASK_SEQUENCE_128;
+	}
+
 	/**
 	 * Generates a 128-bit id.
 	 * 
@@ -418,34 +627,241 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 	 * 
 	 * Where timestamp is in millisec.
 	 * 
+	 * <p>
+	 * Allocates; use {@link #generateId128(long[], int)},
+	 * {@link #generateId128(byte[], int)} or
+	 * {@link #generateId128(ByteBuffer)} on hot paths.
+	 * </p>
+	 * 
 	 * @return
 	 */
-	synchronized public BigInteger generateId128() {
-		long timestamp = System.currentTimeMillis();
-		long sequence = 0;
-		if (timestamp == this.lastTimestampMillisec.get()) {
-			// increase sequence
-			sequence = this.sequenceMillisec.incrementAndGet();
-			if (sequence > MAX_SEQUENCE_128) {
-				// reset sequence
-				this.sequenceMillisec.set(0);
-				waitTillNextMillisec(timestamp);
-				return generateId128();
-			}
-		} else {
-			// reset sequence
-			this.sequenceMillisec.set(sequence);
-			this.lastTimestampMillisec.set(timestamp);
+	public BigInteger generateId128() {
+		byte[] buffer = new byte[16];
+		generateId128(buffer, 0);
+		return new BigInteger(1, buffer);
+	}
+
+	/**
+	 * Generates a 128-bit id into a pair of longs: {@code out[offset]} receives
+	 * the high 64 bits (timestamp), {@code out[offset + 1]} the low 64 bits
+	 * (node id and sequence number).
+	 * 
+	 * @param out
+	 * @param offset
+	 * @since 1.0.0
+	 */
+	public void generateId128(long[] out, int offset) {
+		long state = nextState(this.state128, 1, MAX_SEQUENCE_128);
+		out[offset] = state >>> STATE_SEQUENCE_BITS;
+		out[offset + 1] = template128 | (state & MASK_SEQUENCE_128);
+	}
+
+	/**
+	 * Generates a 128-bit id into 16 big-endian bytes.
+	 * 
+	 * @param out
+	 * @param offset
+	 *            index of the first byte
+	 * @since 1.0.0
+	 */
+	public void generateId128(byte[] out, int offset) {
+		long state = nextState(this.state128, 1, MAX_SEQUENCE_128);
+		putLong(out, offset, state >>> STATE_SEQUENCE_BITS);
+		putLong(out, offset + 8, template128 | (state & MASK_SEQUENCE_128));
+	}
+
+	/**
+	 * Generates a 128-bit id and puts it into a buffer (16 bytes, in the
+	 * buffer's byte order), advancing its position.
+	 * 
+	 * @param out
+	 * @since 1.0.0
+	 */
+	public void generateId128(ByteBuffer out) {
+		long state = nextState(this.state128, 1, MAX_SEQUENCE_128);
+		out.putLong(state >>> STATE_SEQUENCE_BITS);
+		out.putLong(template128 | (state & MASK_SEQUENCE_128));
+	}
+
+	private static void putLong(byte[] out, int offset, long value) {
+		for (int i = 7; i >= 0; i--) {
+			out[offset + i] = (byte) value;
+			value >>>= 8;
 		}
+	}
+
+	/**
+	 * Generates the low 64 bits of a 128-bit id.
+	 * 
+	 * @return
+	 */
+	private long generateId128Low() {
+		long state = nextState(this.state128, 1, MAX_SEQUENCE_128);
+		return template128 | (state & MASK_SEQUENCE_128);
+	}
+
+	/* UUIDv7 / ULID */
+
+	private final static long MAX_SEQUENCE_UUID7 = 0xFFF; // 12 bits
+	private final static long MAX_SEQUENCE_ULID = 0xFFFF; // 16 bits
+	private final static long MASK_NODE_ID_UUID = 0xFFFF; // 16 bits
+	private final static long MASK_RANDOM_UUID7 = 0x3FFFFFFFFFFFL; // 46 bits
+	private final static long MASK_RANDOM_ULID = 0xFFFFFFFFFFFFL; // 48 bits
 
-		BigInteger biSequence = BigInteger.valueOf(sequence & MASK_SEQUENCE_128);
-		BigInteger biResult = BigInteger.valueOf(timestamp);
-		biResult = biResult.shiftLeft((int) SHIFT_TIMESTAMP_128);
-		biResult = biResult.or(template128).or(biSequence);
-		return biResult;
+	/**
+	 * Generates a RFC 9562 UUID version 7 as a pair of longs:
+	 * {@code out[offset]} receives the most significant bits,
+	 * {@code out[offset + 1]} the least significant bits.
+	 * 
+	 * <p>
+	 * Format: <48-bit: timestamp><4-bit: version><12-bit: sequence
+	 * number><2-bit: variant><16-bit: node id><46-bit: random>
+	 * </p>
+	 * 
+	 * <p>
+	 * Where timestamp is the UNIX timestamp in millisec; ids generated by one
+	 * generator are strictly ascending.
+	 * </p>
+	 * 
+	 * @param out
+	 * @param offset
+	 * @since 1.0.0
+	 */
+	public void generateUuid7(long[] out, int offset) {
+		long state = nextState(this.stateUuid7, 1, MAX_SEQUENCE_UUID7);
+		out[offset] = (state >>> STATE_SEQUENCE_BITS) << 16 | 0x7000L | (state & MAX_SEQUENCE_UUID7);
+		out[offset + 1] = 0x8000000000000000L | (nodeId & MASK_NODE_ID_UUID) << 46
+				| (ThreadLocalRandom.current().nextLong() & MASK_RANDOM_UUID7);
 	}
-	
-	
+
+	/**
+	 * Generates a RFC 9562 UUID version 7 into 16 big-endian bytes.
+	 * 
+	 * @param out
+	 * @param offset
+	 *            index of the first byte
+	 * @since 1.0.0
+	 * @see #generateUuid7(long[], int)
+	 */
+	public void generateUuid7(byte[] out, int offset) {
+		long state = nextState(this.stateUuid7, 1, MAX_SEQUENCE_UUID7);
+		putLong(out, offset, (state >>> STATE_SEQUENCE_BITS) << 16 | 0x7000L
+				| (state & MAX_SEQUENCE_UUID7));
+		putLong(out, offset + 8, 0x8000000000000000L | (nodeId & MASK_NODE_ID_UUID) << 46
+				| (ThreadLocalRandom.current().nextLong() & MASK_RANDOM_UUID7));
+	}
+
+	/**
+	 * Generates a RFC 9562 UUID version 7.
+	 * 
+	 * @return
+	 * @since 1.0.0
+	 * @see #generateUuid7(long[], int)
+	 */
+	public UUID generateUuid7() {
+		long state = nextState(this.stateUuid7, 1, MAX_SEQUENCE_UUID7);
+		return new UUID((state >>> STATE_SEQUENCE_BITS) << 16 | 0x7000L
+				| (state & MAX_SEQUENCE_UUID7), 0x8000000000000000L
+				| (nodeId & MASK_NODE_ID_UUID) << 46
+				| (ThreadLocalRandom.current().nextLong() & MASK_RANDOM_UUID7));
+	}
+
+	/**
+	 * Extracts the (UNIX) timestamp from a UUID version 7.
+	 * 
+	 * @param uuid
+	 * @return the UNIX timestamp (milliseconds)
+	 * @since 1.0.0
+	 */
+	public static long extractTimestampUuid7(UUID uuid) {
+		return uuid.getMostSignificantBits() >>> 16;
+	}
+
+	/**
+	 * Generates a ULID (https://github.com/ulid/spec) as a pair of longs:
+	 * {@code out[offset]} receives the high 64 bits, {@code out[offset + 1]}
+	 * the low 64 bits.
+	 * 
+	 * <p>
+	 * Format: <48-bit: timestamp><16-bit: sequence number><16-bit: node
+	 * id><48-bit: random>
+	 * </p>
+	 * 
+	 * <p>
+	 * Where timestamp is the UNIX timestamp in millisec; ids generated by one
+	 * generator are strictly ascending.
+	 * </p>
+	 * 
+	 * @param out
+	 * @param offset
+	 * @since 1.0.0
+	 */
+	public void generateUlid(long[] out, int offset) {
+		long state = nextState(this.stateUlid, 1, MAX_SEQUENCE_ULID);
+		out[offset] = (state >>> STATE_SEQUENCE_BITS) << 16 | (state & MAX_SEQUENCE_ULID);
+		out[offset + 1] = (nodeId & MASK_NODE_ID_UUID) << 48
+				| (ThreadLocalRandom.current().nextLong() & MASK_RANDOM_ULID);
+	}
+
+	/**
+	 * Generates a ULID into 16 big-endian bytes.
+	 * 
+	 * @param out
+	 * @param offset
+	 *            index of the first byte
+	 * @since 1.0.0
+	 * @see #generateUlid(long[], int)
+	 */
+	public void generateUlid(byte[] out, int offset) {
+		long state = nextState(this.stateUlid, 1, MAX_SEQUENCE_ULID);
+		putLong(out, offset, (state >>> STATE_SEQUENCE_BITS) << 16 | (state & MAX_SEQUENCE_ULID));
+		putLong(out, offset + 8, (nodeId & MASK_NODE_ID_UUID) << 48
+				| (ThreadLocalRandom.current().nextLong() & MASK_RANDOM_ULID));
+	}
+
+	/**
+	 * Generates a ULID as 26 Crockford base32 characters into a caller-supplied
+	 * buffer.
+	 * 
+	 * @param out
+	 * @param offset
+	 *            index of the first character
+	 * @since 1.0.0
+	 * @see #generateUlid(long[], int)
+	 */
+	public void generateUlid(char[] out, int offset) {
+		long state = nextState(this.stateUlid, 1, MAX_SEQUENCE_ULID);
+		Base32Util.encode128((state >>> STATE_SEQUENCE_BITS) << 16 | (state & MAX_SEQUENCE_ULID),
+				(nodeId & MASK_NODE_ID_UUID) << 48
+						| (ThreadLocalRandom.current().nextLong() & MASK_RANDOM_ULID), out, offset);
+	}
+
+	/**
+	 * Generates a ULID as a 26-character Crockford base32 string.
+	 * 
+	 * @return
+	 * @since 1.0.0
+	 * @see #generateUlid(long[], int)
+	 */
+	public String generateUlid() {
+		char[] buffer = new char[Base32Util.LENGTH_128];
+		generateUlid(buffer, 0);
+		return new String(buffer);
+	}
+
+	/**
+	 * Extracts the (UNIX) timestamp from a ULID string.
+	 * 
+	 * @param ulid
+	 * @return the UNIX timestamp (milliseconds)
+	 * @since 1.0.0
+	 */
+	public static long extractTimestampUlid(CharSequence ulid) {
+		// the first 10 characters carry 2 padding bits and the 48-bit timestamp
+		return Base32Util.decode(ulid, 0, 10);
+	}
+
+	/* UUIDv7 / ULID */
 
 	@Override
 	public boolean setValue(String namespace, long value) {
@@ -470,9 +886,30 @@ public class SnowflakeIdGenerator implements IdentityGenerator {
 		else if(namespace.equals("tiny")) 
 			return this.generateIdTiny();
 		else if(namespace.equals("128")) 
-			return this.generateId128().longValue();
+			return this.generateId128Low();
 		else
 			return this.generateIdMini();
 	}
+
+	/**
+	 * Generates a batch of ids.
+	 * 
+	 * @param namespace
+	 *            id format, same as {@link #nextId(String)}
+	 * @param count
+	 * @return
+	 * @since 1.0.0
+	 */
+	@Override
+	public long[] nextIds(String namespace, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Count must be positive: " + count);
+		}
+		long[] result = new long[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = nextId(namespace);
+		}
+		return result;
+	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package com.appleframework.id;
+
+/**
+ * Bit layout of a Snowflake id: {@code <timestamp><node id><sequence number>}.
+ *
+ * <p>
+ * Shifts and masks are computed once at construction, so encoding and
+ * decoding cost the same few bit operations as a hand-written layout.
+ * </p>
+ *
+ * <p>
+ * Timestamps are counted in ticks of {@link #getTickMillis()} milliseconds
+ * since {@link #getEpoch()}; e.g. a layout of 39-bit 10ms ticks, 16-bit node
+ * id and 8-bit sequence number covers about 170 years:
+ * </p>
+ *
+ * <pre>
+ * new SnowflakeLayout(39, 16, 8, 10, SnowflakeIdGenerator.TIMESTAMP_EPOCH)
+ * </pre>
+ *
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public final class SnowflakeLayout {
+
+	/**
+	 * Maximum number of sequence bits a layout can use.
+	 */
+	public final static int MAX_SEQUENCE_BITS = 22;
+
+	/**
+	 * Format: <41-bit: timestamp><10-bit: node id><13 bit: sequence number>
+	 */
+	public final static SnowflakeLayout ID_64 = new SnowflakeLayout(41, 10, 13, 1,
+			SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+
+	/**
+	 * Format: <32-bit: timestamp><3-bit: node id><13 bit: sequence number>
+	 */
+	public final static SnowflakeLayout ID_48 = new SnowflakeLayout(32, 3, 13, 1,
+			SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+
+	/**
+	 * Format: <41-bit: timestamp><0-bit: node id><7 bit: sequence number>
+	 */
+	public final static SnowflakeLayout ID_MINI = new SnowflakeLayout(41, 0, 7, 1,
+			SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+
+	private final int timestampBits, nodeIdBits, sequenceBits;
+	private final long tickMillis, epoch, epochTick;
+	private final long timestampMask, nodeIdMask, sequenceMask;
+	private final int timestampShift, nodeIdShift;
+
+	/**
+	 * Constructs a new layout.
+	 *
+	 * @param timestampBits
+	 * @param nodeIdBits
+	 * @param sequenceBits
+	 *            at most {@link #MAX_SEQUENCE_BITS}
+	 * @param tickMillis
+	 *            tick size in milliseconds
+	 * @param epoch
+	 *            UNIX timestamp (milliseconds) of tick 0
+	 */
+	public SnowflakeLayout(int timestampBits, int nodeIdBits, int sequenceBits, long tickMillis,
+			long epoch) {
+		if (timestampBits < 1 || nodeIdBits < 0 || sequenceBits < 0
+				|| sequenceBits > MAX_SEQUENCE_BITS
+				|| timestampBits + nodeIdBits + sequenceBits > 64) {
+			throw new IllegalArgumentException("Invalid layout: " + timestampBits + "/"
+					+ nodeIdBits + "/" + sequenceBits);
+		}
+		if (tickMillis < 1) {
+			throw new IllegalArgumentException("Tick size must be positive: " + tickMillis);
+		}
+		this.timestampBits = timestampBits;
+		this.nodeIdBits = nodeIdBits;
+		this.sequenceBits = sequenceBits;
+		this.tickMillis = tickMillis;
+		this.epoch = epoch;
+		this.epochTick = epoch / tickMillis;
+		this.timestampMask = timestampBits == 64 ? -1L : (1L << timestampBits) - 1;
+		this.nodeIdMask = (1L << nodeIdBits) - 1;
+		this.sequenceMask = (1L << sequenceBits) - 1;
+		this.nodeIdShift = sequenceBits;
+		this.timestampShift = sequenceBits + nodeIdBits;
+	}
+
+	public int getTimestampBits() {
+		return timestampBits;
+	}
+
+	public int getNodeIdBits() {
+		return nodeIdBits;
+	}
+
+	public int getSequenceBits() {
+		return sequenceBits;
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public long getMaxSequence() {
+		return sequenceMask;
+	}
+
+	public long getMaxNodeId() {
+		return nodeIdMask;
+	}
+
+	/**
+	 * Encodes an id.
+	 *
+	 * @param tick
+	 *            UNIX timestamp in ticks, i.e.
+	 *            {@code currentTimeMillis / tickMillis}
+	 * @param nodeId
+	 * @param sequence
+	 * @return
+	 */
+	public long encode(long tick, long nodeId, long sequence) {
+		return ((tick - epochTick) & timestampMask) << timestampShift
+				| (nodeId & nodeIdMask) << nodeIdShift | (sequence & sequenceMask);
+	}
+
+	/**
+	 * Extracts the (UNIX) timestamp from an id.
+	 *
+	 * @param id
+	 * @return the UNIX timestamp (milliseconds)
+	 */
+	public long extractTimestamp(long id) {
+		return (((id >>> timestampShift) & timestampMask) + epochTick) * tickMillis;
+	}
+
+	/**
+	 * Extracts the node id from an id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public long extractNodeId(long id) {
+		return (id >>> nodeIdShift) & nodeIdMask;
+	}
+
+	/**
+	 * Extracts the sequence number from an id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public long extractSequence(long id) {
+		return id & sequenceMask;
+	}
+
+	/**
+	 * Layouts are equal if they encode ids the same way, so that generator
+	 * state is shared by equal instances.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof SnowflakeLayout)) {
+			return false;
+		}
+		SnowflakeLayout other = (SnowflakeLayout) obj;
+		return timestampBits == other.timestampBits && nodeIdBits == other.nodeIdBits
+				&& sequenceBits == other.sequenceBits && tickMillis == other.tickMillis
+				&& epoch == other.epoch;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = timestampBits;
+		result = 31 * result + nodeIdBits;
+		result = 31 * result + sequenceBits;
+		result = 31 * result + (int) (tickMillis ^ (tickMillis >>> 32));
+		result = 31 * result + (int) (epoch ^ (epoch >>> 32));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "SnowflakeLayout[" + timestampBits + "/" + nodeIdBits + "/" + sequenceBits + ", "
+				+ tickMillis + "ms, epoch " + epoch + "]";
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.appleframework.id;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * {@link SnowflakeIdGenerator} whose sequence is split into stripes, so that
+ * threads on different cores do not contend on the same state.
+ * 
+ * <p>
+ * With {@code 2^k} stripes, the low {@code k} bits of the sequence number hold
+ * the stripe index, and each stripe counts independently in the remaining
+ * sequence bits. A thread always uses the stripe chosen by its thread id.
+ * </p>
+ * 
+ * <p>
+ * Ids are unique within a node, but ordering is weaker than with
+ * {@link SnowflakeIdGenerator}: ids generated by one thread are ascending, and
+ * ids of an earlier millisecond are smaller than ids of a later one, but ids of
+ * the same millisecond generated by different threads are not ordered (nor,
+ * when time is borrowed, ids of nearby milliseconds).
+ * </p>
+ * 
+ * <p>
+ * Striping applies to the 48-bit, 64-bit, mini and custom layout formats; the
+ * other formats are inherited unchanged. Do not use a striped and a plain
+ * generator with the same node id in one process: their ids may collide.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class StripedSnowflakeIdGenerator extends SnowflakeIdGenerator {
+
+	private final static LoadingCache<String, StripedSnowflakeIdGenerator> idGenerators = CacheBuilder
+			.newBuilder().expireAfterAccess(3600, TimeUnit.SECONDS)
+			.removalListener(new RemovalListener<String, StripedSnowflakeIdGenerator>() {
+				@Override
+				public void onRemoval(
+						RemovalNotification<String, StripedSnowflakeIdGenerator> entry) {
+					entry.getValue().destroy();
+				}
+			}).build(new CacheLoader<String, StripedSnowflakeIdGenerator>() {
+				@Override
+				public StripedSnowflakeIdGenerator load(String key) throws Exception {
+					String[] tokens = key.split(":");
+					StripedSnowflakeIdGenerator idGen = new StripedSnowflakeIdGenerator(
+							Long.parseLong(tokens[0]), Integer.parseInt(tokens[1]));
+					idGen.init();
+					return idGen;
+				}
+			});
+
+	/**
+	 * Default number of stripes: the number of available processors, rounded
+	 * up to a power of 2. Layouts with fewer sequence numbers use as many
+	 * stripes as they have sequence numbers.
+	 */
+	public final static int DEFAULT_STRIPES = roundUpToPowerOf2(Runtime.getRuntime()
+			.availableProcessors());
+
+	/**
+	 * Gets a {@link StripedSnowflakeIdGenerator} instance for a node, with
+	 * {@link #DEFAULT_STRIPES} stripes.
+	 * 
+	 * @param nodeId
+	 * @return
+	 */
+	public static StripedSnowflakeIdGenerator getInstance(long nodeId) {
+		return getInstance(nodeId, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Gets a {@link StripedSnowflakeIdGenerator} instance for a node.
+	 * 
+	 * @param nodeId
+	 * @param stripes
+	 *            number of stripes, rounded up to a power of 2
+	 * @return
+	 */
+	public static StripedSnowflakeIdGenerator getInstance(long nodeId, int stripes) {
+		try {
+			return idGenerators.get(nodeId + ":" + roundUpToPowerOf2(stripes));
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+
+	private static int roundUpToPowerOf2(int value) {
+		return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+	}
+
+	private final int stripeBits;
+	private final ConcurrentMap<SnowflakeLayout, AtomicLong[]> stripedStates = new ConcurrentHashMap<SnowflakeLayout, AtomicLong[]>();
+
+	/**
+	 * Constructs a new {@link StripedSnowflakeIdGenerator} instance.
+	 * 
+	 * @param nodeId
+	 * @param stripes
+	 *            number of stripes, rounded up to a power of 2
+	 */
+	protected StripedSnowflakeIdGenerator(long nodeId, int stripes) {
+		super(nodeId);
+		if (stripes < 1) {
+			throw new IllegalArgumentException("Number of stripes must be positive: " + stripes);
+		}
+		this.stripeBits = Integer.numberOfTrailingZeros(roundUpToPowerOf2(stripes));
+	}
+
+	public int getStripes() {
+		return 1 << stripeBits;
+	}
+
+	/**
+	 * Gets the stripes of a layout: at most {@code 2^sequenceBits}, so that
+	 * layouts with few sequence bits (e.g. {@link SnowflakeLayout#ID_MINI})
+	 * use fewer stripes instead of failing.
+	 */
+	private AtomicLong[] stripedState(SnowflakeLayout layout) {
+		AtomicLong[] states = stripedStates.get(layout);
+		if (states == null) {
+			int bits = Math.min(stripeBits, layout.getSequenceBits());
+			AtomicLong[] newStates = new AtomicLong[1 << bits];
+			for (int i = 0; i < newStates.length; i++) {
+				newStates[i] = new PaddedAtomicLong();
+			}
+			states = stripedStates.putIfAbsent(layout, newStates);
+			if (states == null) {
+				states = newStates;
+			}
+		}
+		return states;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long generateId(SnowflakeLayout layout) {
+		AtomicLong[] states = stripedState(layout);
+		int bits = Integer.numberOfTrailingZeros(states.length);
+		int stripe = (int) Thread.currentThread().getId() & (states.length - 1);
+		long next = nextState(states[stripe], layout.getTickMillis(),
+				layout.getMaxSequence() >>> bits);
+		long sequence = (next & STATE_SEQUENCE_MASK) << bits | stripe;
+		return layout.encode(next >>> STATE_SEQUENCE_BITS, getNodeId(), sequence);
+	}
+}
@@ -0,0 +1,34 @@
+package com.appleframework.id.node;
+
+import com.appleframework.id.NodeIdProvider;
+
+/**
+ * Tries a list of {@link NodeIdProvider}s in order and returns the first
+ * resolved node id.
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class ChainedNodeIdProvider implements NodeIdProvider {
+
+	private final NodeIdProvider[] providers;
+
+	public ChainedNodeIdProvider(NodeIdProvider... providers) {
+		this.providers = providers;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNodeId() {
+		for (NodeIdProvider provider : providers) {
+			long nodeId = provider.getNodeId();
+			if (nodeId >= 0) {
+				return nodeId;
+			}
+		}
+		return -1;
+	}
+
+}
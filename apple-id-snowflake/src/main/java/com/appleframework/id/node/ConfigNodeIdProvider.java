@@ -0,0 +1,52 @@
+package com.appleframework.id.node;
+
+import com.appleframework.id.NodeIdProvider;
+
+/**
+ * Node id from configuration: an explicit value, a system property or an
+ * environment variable, in this order.
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class ConfigNodeIdProvider implements NodeIdProvider {
+
+	public final static String DEFAULT_PROPERTY_NAME = "apple.id.node-id";
+	public final static String DEFAULT_ENV_NAME = "APPLE_ID_NODE_ID";
+
+	private long nodeId = -1;
+	private String propertyName = DEFAULT_PROPERTY_NAME;
+	private String envName = DEFAULT_ENV_NAME;
+
+	public ConfigNodeIdProvider() {
+	}
+
+	public ConfigNodeIdProvider(long nodeId) {
+		this.nodeId = nodeId;
+	}
+
+	public ConfigNodeIdProvider(String propertyName, String envName) {
+		this.propertyName = propertyName;
+		this.envName = envName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNodeId() {
+		if (nodeId >= 0) {
+			return nodeId;
+		}
+		String value = propertyName != null ? System.getProperty(propertyName) : null;
+		if (value == null || value.trim().isEmpty()) {
+			value = envName != null ? System.getenv(envName) : null;
+		}
+		try {
+			return value != null ? Long.parseLong(value.trim()) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.appleframework.id.node;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appleframework.id.NodeIdProvider;
+
+/**
+ * Node id leased from a directory shared by the processes that need distinct
+ * node ids (the same host, or a shared volume).
+ * 
+ * <p>
+ * Node id {@code n} is held by an exclusive lock on file {@code node-n.lock}
+ * for the lifetime of the process (or until {@link #release()}); the operating
+ * system releases the lock when the process dies. The lowest free id in
+ * {@code [0, 2^bits)} is leased, so a restarted process gets its id back.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class FileNodeIdProvider implements NodeIdProvider {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileNodeIdProvider.class);
+
+	public final static int DEFAULT_BITS = 10;
+
+	private final File directory;
+	private int bits = DEFAULT_BITS;
+	private long nodeId = -1;
+	private RandomAccessFile leaseFile;
+	private FileLock lease;
+
+	public FileNodeIdProvider(String directory) {
+		this(new File(directory));
+	}
+
+	public FileNodeIdProvider(File directory) {
+		this.directory = directory;
+	}
+
+	public FileNodeIdProvider(File directory, int bits) {
+		this.directory = directory;
+		this.bits = bits;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	synchronized public long getNodeId() {
+		if (nodeId >= 0) {
+			return nodeId;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			logger.warn("Cannot create lease directory " + directory);
+			return -1;
+		}
+		long maxNodeId = 1L << bits;
+		for (long id = 0; id < maxNodeId; id++) {
+			RandomAccessFile file = null;
+			try {
+				file = new RandomAccessFile(new File(directory, "node-" + id + ".lock"), "rw");
+				FileChannel channel = file.getChannel();
+				FileLock lock = channel.tryLock();
+				if (lock != null) {
+					leaseFile = file;
+					lease = lock;
+					nodeId = id;
+					return nodeId;
+				}
+			} catch (OverlappingFileLockException e) {
+				// held by this JVM
+			} catch (IOException e) {
+				logger.warn(e.getMessage(), e);
+				closeQuietly(file);
+				return -1;
+			}
+			closeQuietly(file);
+		}
+		return -1;
+	}
+
+	/**
+	 * Releases the leased node id.
+	 */
+	synchronized public void release() {
+		try {
+			if (lease != null) {
+				lease.release();
+			}
+		} catch (IOException e) {
+			logger.warn(e.getMessage(), e);
+		} finally {
+			closeQuietly(leaseFile);
+			lease = null;
+			leaseFile = null;
+			nodeId = -1;
+		}
+	}
+
+	private static void closeQuietly(RandomAccessFile file) {
+		try {
+			if (file != null) {
+				file.close();
+			}
+		} catch (IOException e) {
+		}
+	}
+
+}
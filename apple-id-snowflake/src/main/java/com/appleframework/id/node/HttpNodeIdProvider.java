@@ -0,0 +1,51 @@
+package com.appleframework.id.node;
+
+import com.appleframework.id.NodeIdProvider;
+import com.appleframework.id.utils.HttpRequestUtil;
+
+/**
+ * Node id fetched from a remote id server over HTTP.
+ * 
+ * <p>
+ * Each attempt may block up to the connect and read timeouts of
+ * {@link HttpRequestUtil}; prefer a local strategy in network-isolated
+ * environments.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class HttpNodeIdProvider implements NodeIdProvider {
+
+	public final static String DEFAULT_URL = "http://id.appleframework.com/api/segment/get/apple";
+
+	private String url = DEFAULT_URL;
+	private int attempts = 3;
+
+	public HttpNodeIdProvider() {
+	}
+
+	public HttpNodeIdProvider(String url, int attempts) {
+		this.url = url;
+		this.attempts = attempts;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNodeId() {
+		for (int i = 0; i < attempts; i++) {
+			String result = HttpRequestUtil.sendGet(url);
+			if (null != result && result.length() > 0) {
+				try {
+					return Long.parseLong(result.trim());
+				} catch (NumberFormatException e) {
+					return -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.appleframework.id.node;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appleframework.id.NodeIdProvider;
+
+/**
+ * Node id derived from the host's network identity, without any remote call.
+ * 
+ * <p>
+ * The lowest {@code bits} bits of the first site-local IPv4 address are used,
+ * which are unique within a subnet of up to {@code 2^bits} hosts. Without such
+ * an address, a hash of the host name (environment variable
+ * {@code HOSTNAME}/{@code COMPUTERNAME}) or of any other address is used.
+ * </p>
+ * 
+ * <p>
+ * Node ids are not coordinated: two hosts whose addresses share the low bits
+ * (e.g. in different subnets) get the same id, and a hashed id collides with
+ * another host's with probability {@code 1/2^bits}, i.e. almost surely in a
+ * fleet of hundreds of hosts with 10 bits. Hosts sharing a node id generate
+ * the same ids. A warning is logged when a hashed id is used; prefer a
+ * configured or leased node id.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class NetworkNodeIdProvider implements NodeIdProvider {
+
+	private static final Logger logger = LoggerFactory.getLogger(NetworkNodeIdProvider.class);
+
+	public final static int DEFAULT_BITS = 10;
+
+	private int bits = DEFAULT_BITS;
+
+	public NetworkNodeIdProvider() {
+	}
+
+	public NetworkNodeIdProvider(int bits) {
+		this.bits = bits;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNodeId() {
+		long mask = (1L << bits) - 1;
+		byte[] fallback = null;
+		try {
+			Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+			while (interfaces != null && interfaces.hasMoreElements()) {
+				NetworkInterface ni = interfaces.nextElement();
+				if (ni.isLoopback() || !ni.isUp()) {
+					continue;
+				}
+				Enumeration<InetAddress> addresses = ni.getInetAddresses();
+				while (addresses.hasMoreElements()) {
+					InetAddress address = addresses.nextElement();
+					if (address instanceof Inet4Address && address.isSiteLocalAddress()) {
+						byte[] ip = address.getAddress();
+						long value = ((ip[0] & 0xFFL) << 24) | ((ip[1] & 0xFFL) << 16)
+								| ((ip[2] & 0xFFL) << 8) | (ip[3] & 0xFFL);
+						return value & mask;
+					}
+					if (fallback == null && !address.isLinkLocalAddress()) {
+						fallback = address.getAddress();
+					}
+				}
+			}
+		} catch (Exception e) {
+			logger.warn(e.getMessage(), e);
+		}
+		String hostname = System.getenv("HOSTNAME");
+		if (hostname == null || hostname.isEmpty()) {
+			hostname = System.getenv("COMPUTERNAME");
+		}
+		if (hostname != null && !hostname.isEmpty()) {
+			long nodeId = hostname.hashCode() & mask;
+			logger.warn("Node id [" + nodeId + "] hashed from host name [" + hostname
+					+ "], it may collide with another node's");
+			return nodeId;
+		}
+		if (fallback != null) {
+			long nodeId = Arrays.hashCode(fallback) & mask;
+			logger.warn("Node id [" + nodeId
+					+ "] hashed from a network address, it may collide with another node's");
+			return nodeId;
+		}
+		return -1;
+	}
+
+}
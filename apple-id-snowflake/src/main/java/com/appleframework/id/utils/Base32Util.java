@@ -0,0 +1,110 @@
+package com.appleframework.id.utils;
+
+/**
+ * Crockford base32 (https://www.crockford.com/base32.html) encoding of
+ * 128-bit values, as used by ULID.
+ * 
+ * <p>
+ * A 128-bit value is encoded as 26 characters, most significant first; the
+ * first character carries only the 3 highest bits.
+ * </p>
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class Base32Util {
+
+	public final static int LENGTH_128 = 26;
+
+	private final static char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+	private final static byte[] LOOKUP = new byte[128];
+
+	static {
+		for (int i = 0; i < LOOKUP.length; i++) {
+			LOOKUP[i] = -1;
+		}
+		for (int i = 0; i < ALPHABET.length; i++) {
+			LOOKUP[ALPHABET[i]] = (byte) i;
+			LOOKUP[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+		}
+		// Crockford aliases
+		LOOKUP['O'] = LOOKUP['o'] = 0;
+		LOOKUP['I'] = LOOKUP['i'] = LOOKUP['L'] = LOOKUP['l'] = 1;
+	}
+
+	/**
+	 * Encodes a 128-bit value into {@link #LENGTH_128} characters.
+	 * 
+	 * @param high
+	 *            high 64 bits
+	 * @param low
+	 *            low 64 bits
+	 * @param out
+	 * @param offset
+	 *            index of the first character
+	 */
+	public static void encode128(long high, long low, char[] out, int offset) {
+		for (int i = LENGTH_128 - 1; i >= 0; i--) {
+			out[offset + i] = ALPHABET[(int) (low & 0x1F)];
+			low = (low >>> 5) | (high << 59);
+			high >>>= 5;
+		}
+	}
+
+	/**
+	 * Decodes {@link #LENGTH_128} characters into a 128-bit value.
+	 * 
+	 * @param in
+	 * @param offset
+	 *            index of the first character
+	 * @param out
+	 *            receives {@code [high, low]} at {@code outOffset}
+	 * @param outOffset
+	 * @throws IllegalArgumentException
+	 *             if a character is not valid base32 or the value overflows
+	 *             128 bits
+	 */
+	public static void decode128(CharSequence in, int offset, long[] out, int outOffset) {
+		long high = 0, low = 0;
+		for (int i = 0; i < LENGTH_128; i++) {
+			int v = valueOf(in.charAt(offset + i), offset + i);
+			if (i == 0 && v > 7) {
+				throw new IllegalArgumentException("Value overflows 128 bits: " + in);
+			}
+			high = (high << 5) | (low >>> 59);
+			low = (low << 5) | v;
+		}
+		out[outOffset] = high;
+		out[outOffset + 1] = low;
+	}
+
+	/**
+	 * Decodes up to 12 characters into a long.
+	 * 
+	 * @param in
+	 * @param offset
+	 *            index of the first character
+	 * @param length
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if a character is not valid base32
+	 */
+	public static long decode(CharSequence in, int offset, int length) {
+		if (length > 12) {
+			throw new IllegalArgumentException("Too many characters for a long: " + length);
+		}
+		long result = 0;
+		for (int i = 0; i < length; i++) {
+			result = (result << 5) | valueOf(in.charAt(offset + i), offset + i);
+		}
+		return result;
+	}
+
+	private static int valueOf(char c, int index) {
+		int v = c < LOOKUP.length ? LOOKUP[c] : -1;
+		if (v < 0) {
+			throw new IllegalArgumentException("Invalid base32 character [" + c + "] at " + index);
+		}
+		return v;
+	}
+}
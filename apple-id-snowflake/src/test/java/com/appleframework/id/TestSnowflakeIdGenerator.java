@@ -0,0 +1,269 @@
+package com.appleframework.id;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.junit.Before;
+
+import com.appleframework.id.exception.IdException;
+import com.appleframework.id.node.ChainedNodeIdProvider;
+import com.appleframework.id.node.ConfigNodeIdProvider;
+import com.appleframework.id.node.NetworkNodeIdProvider;
+import com.appleframework.id.utils.Base32Util;
+
+/**
+ * Test case for {@link SnowflakeIdGenerator}
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestSnowflakeIdGenerator extends TestCase {
+
+	private SnowflakeIdGenerator idGenerator;
+
+	public static Test suite() {
+		return new TestSuite(TestSnowflakeIdGenerator.class);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		idGenerator = SnowflakeIdGenerator.getInstance(1);
+	}
+
+	@org.junit.Test
+	public void test1() throws Exception {
+		long now = System.currentTimeMillis();
+		long id64 = idGenerator.generateId64();
+		long idMini = idGenerator.generateIdMini();
+		assertTrue(Math.abs(SnowflakeIdGenerator.extractTimestamp64(id64) - now) < 1000);
+		assertTrue(Math.abs(SnowflakeIdGenerator.extractTimestampMini(idMini) - now) < 1000);
+		assertTrue(Math.abs(SnowflakeIdGenerator.extractTimestamp128(idGenerator.generateId128()) - now) < 1000);
+	}
+
+	@org.junit.Test
+	public void test2() throws Exception {
+		assertUniqueAndAscendingPerThread(idGenerator);
+	}
+
+	private static void assertUniqueAndAscendingPerThread(final SnowflakeIdGenerator idGenerator)
+			throws InterruptedException {
+		final int numThreads = 8, numRuns = 20000;
+		final Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+		final CountDownLatch latch = new CountDownLatch(numThreads);
+		final boolean[] ascending = new boolean[] { true };
+		for (int t = 0; t < numThreads; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						long last = 0;
+						for (int i = 0; i < numRuns; i++) {
+							long id = idGenerator.generateId64();
+							if (id <= last) {
+								ascending[0] = false;
+							}
+							last = id;
+							ids.put(id, id);
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			}).start();
+		}
+		latch.await();
+		assertTrue(ascending[0]);
+		assertEquals(numThreads * numRuns, ids.size());
+	}
+
+	@org.junit.Test
+	public void test3() throws Exception {
+		long[] ids = idGenerator.nextIds("64", 10000);
+		for (int i = 1; i < ids.length; i++) {
+			assertTrue(ids[i] > ids[i - 1]);
+		}
+	}
+
+	@org.junit.Test
+	public void test4() throws Exception {
+		System.setProperty(ConfigNodeIdProvider.DEFAULT_PROPERTY_NAME, "7");
+		try {
+			assertSame(SnowflakeIdGenerator.getInstance(7), SnowflakeIdGenerator
+					.getInstance(new ChainedNodeIdProvider(new ConfigNodeIdProvider(),
+							new NetworkNodeIdProvider())));
+		} finally {
+			System.clearProperty(ConfigNodeIdProvider.DEFAULT_PROPERTY_NAME);
+		}
+		assertTrue(new NetworkNodeIdProvider().getNodeId() < 1024);
+
+		// no guessed default node id
+		SnowflakeIdGenerator.setNodeIdProvider(new ConfigNodeIdProvider());
+		try {
+			if (System.getenv(ConfigNodeIdProvider.DEFAULT_ENV_NAME) == null) {
+				try {
+					SnowflakeIdGenerator.getDefaultNodeId();
+					fail("no node id configured");
+				} catch (IdException.OperationFailedException e) {
+					// expected
+				}
+			}
+			System.setProperty(ConfigNodeIdProvider.DEFAULT_PROPERTY_NAME, "7");
+			assertEquals(7, SnowflakeIdGenerator.getDefaultNodeId());
+		} finally {
+			System.clearProperty(ConfigNodeIdProvider.DEFAULT_PROPERTY_NAME);
+			SnowflakeIdGenerator.setNodeIdProvider(new ConfigNodeIdProvider());
+		}
+	}
+
+	@org.junit.Test
+	public void test5() throws Exception {
+		SnowflakeLayout layout = new SnowflakeLayout(39, 16, 8, 10,
+				SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0xBEEF);
+		generator.init();
+		long now = System.currentTimeMillis();
+		long last = 0;
+		for (int i = 0; i < 1000; i++) {
+			long id = generator.generateId(layout);
+			assertTrue(id > last);
+			last = id;
+			assertEquals(0xBEEF, layout.extractNodeId(id));
+		}
+		assertTrue(Math.abs(layout.extractTimestamp(last) - now) < 1000);
+		long id = layout.encode(now / 10, 1, 0x45);
+		assertEquals(now / 10 * 10, layout.extractTimestamp(id));
+		assertEquals(1, layout.extractNodeId(id));
+		assertEquals(0x45, layout.extractSequence(id));
+	}
+
+	@org.junit.Test
+	public void test6() throws Exception {
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+		generator.init();
+		generator.setMaxBorrowMillis(60000);
+		long last = 0;
+		for (int i = 0; i < 100000; i++) {
+			long id = generator.generateIdMini();
+			assertTrue(id > last);
+			last = id;
+		}
+		// 128 ids/ms: the burst must borrow time instead of waiting
+		assertTrue(generator.getBorrowedTicks() > 0);
+		assertEquals(0, generator.getWaitCount());
+	}
+
+	@org.junit.Test
+	public void test7() throws Exception {
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+		generator.init();
+		long now = System.currentTimeMillis();
+		long[] pair = new long[2];
+		generator.generateId128(pair, 0);
+		assertTrue(Math.abs(SnowflakeIdGenerator.extractTimestamp128(pair, 0) - now) < 1000);
+		assertEquals(3, SnowflakeIdGenerator.extractNodeId128(pair[1]));
+
+		byte[] bytes = new byte[16];
+		generator.generateId128(bytes, 0);
+		BigInteger id128 = new BigInteger(1, bytes);
+		assertEquals(SnowflakeIdGenerator.extractTimestamp128(id128),
+				SnowflakeIdGenerator.extractTimestamp128(bytes, 0));
+		assertEquals(3, SnowflakeIdGenerator.extractNodeId128(id128.longValue()));
+
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		generator.generateId128(buffer);
+		assertEquals(16, buffer.position());
+		assertTrue(buffer.getLong(0) >= SnowflakeIdGenerator.extractTimestamp128(bytes, 0));
+		assertTrue(generator.generateId128().compareTo(id128) > 0);
+	}
+
+	@org.junit.Test
+	public void test8() throws Exception {
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5);
+		generator.init();
+		long now = System.currentTimeMillis();
+		UUID last = generator.generateUuid7();
+		assertEquals(7, last.version());
+		assertEquals(2, last.variant());
+		assertTrue(Math.abs(SnowflakeIdGenerator.extractTimestampUuid7(last) - now) < 1000);
+		for (int i = 0; i < 10000; i++) {
+			UUID uuid = generator.generateUuid7();
+			// UUID.compareTo is signed; compare as unsigned 128-bit keys
+			assertTrue(uuid.toString().compareTo(last.toString()) > 0);
+			last = uuid;
+		}
+
+		char[] buffer = new char[26];
+		String lastUlid = generator.generateUlid();
+		assertTrue(Math.abs(SnowflakeIdGenerator.extractTimestampUlid(lastUlid) - now) < 1000);
+		for (int i = 0; i < 10000; i++) {
+			generator.generateUlid(buffer, 0);
+			String ulid = new String(buffer);
+			assertTrue(ulid.compareTo(lastUlid) > 0);
+			lastUlid = ulid;
+		}
+		long[] value = new long[2];
+		Base32Util.decode128(lastUlid, 0, value, 0);
+		Base32Util.encode128(value[0], value[1], buffer, 0);
+		assertEquals(lastUlid, new String(buffer));
+		assertEquals(5, value[1] >>> 48);
+	}
+
+	@org.junit.Test
+	public void test9() throws Exception {
+		StripedSnowflakeIdGenerator striped = StripedSnowflakeIdGenerator.getInstance(2, 5);
+		assertEquals(8, striped.getStripes());
+		assertUniqueAndAscendingPerThread(striped);
+		long id = striped.generateId64();
+		assertEquals(2, SnowflakeLayout.ID_64.extractNodeId(id));
+		assertEquals(Thread.currentThread().getId() & 7, SnowflakeLayout.ID_64.extractSequence(id) & 7);
+	}
+
+	@org.junit.Test
+	public void test10() throws Exception {
+		SnowflakeLayout layout1 = new SnowflakeLayout(41, 10, 13, 1,
+				SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+		SnowflakeLayout layout2 = new SnowflakeLayout(41, 10, 13, 1,
+				SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+		assertEquals(layout1, layout2);
+		assertEquals(layout1.hashCode(), layout2.hashCode());
+		assertEquals(SnowflakeLayout.ID_64, layout1);
+		assertFalse(layout1.equals(SnowflakeLayout.ID_48));
+
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(4);
+		generator.init();
+		Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+		for (int i = 0; i < 10000; i++) {
+			long id = generator.generateId(i % 2 == 0 ? layout1 : layout2);
+			ids.put(id, id);
+			id = generator.generateId(new SnowflakeLayout(41, 10, 13, 1,
+					SnowflakeIdGenerator.TIMESTAMP_EPOCH));
+			ids.put(id, id);
+		}
+		assertEquals(20000, ids.size());
+	}
+
+	@org.junit.Test
+	public void test11() throws Exception {
+		// more stripes than ID_MINI has sequence numbers
+		StripedSnowflakeIdGenerator striped = StripedSnowflakeIdGenerator.getInstance(0, 256);
+		assertEquals(256, striped.getStripes());
+		Map<Long, Long> ids = new ConcurrentHashMap<Long, Long>();
+		for (int i = 0; i < 1000; i++) {
+			long id = striped.nextId(null);
+			ids.put(id, id);
+		}
+		assertEquals(1000, ids.size());
+		SnowflakeLayout noSequence = new SnowflakeLayout(41, 10, 0, 1,
+				SnowflakeIdGenerator.TIMESTAMP_EPOCH);
+		long id1 = striped.generateId(noSequence);
+		assertTrue(striped.generateId(noSequence) > id1);
+	}
+}
@@ -0,0 +1,84 @@
+package test.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.appleframework.id.SnowflakeIdGenerator;
+import com.appleframework.id.StripedSnowflakeIdGenerator;
+
+/**
+ * Measures {@link SnowflakeIdGenerator#generateId64()} throughput as the number
+ * of threads grows, against the same calls serialized on a monitor (as the
+ * former {@code synchronized} generator did), and against
+ * {@link StripedSnowflakeIdGenerator}.
+ */
+public class BenchmarkSnowflakeContention {
+
+    private static double runTest(final SnowflakeIdGenerator idGenerator, final int numRuns,
+            final int numThreads, final boolean serialized) throws InterruptedException {
+        final Object lock = new Object();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        final int opsPerThread = numRuns / numThreads;
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < opsPerThread; i++) {
+                            if (serialized) {
+                                synchronized (lock) {
+                                    idGenerator.generateId64();
+                                }
+                            } else {
+                                idGenerator.generateId64();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        long before = System.nanoTime();
+        start.countDown();
+        done.await();
+        long totalTime = System.nanoTime() - before;
+        return opsPerThread * numThreads / (totalTime / 1E9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int numRuns, maxThreads;
+        try {
+            numRuns = Integer.parseInt(System.getProperty("numRuns"));
+        } catch (Exception e) {
+            numRuns = 4000000;
+        }
+        try {
+            maxThreads = Integer.parseInt(System.getProperty("maxThreads"));
+        } catch (Exception e) {
+            maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        }
+
+        System.out.println("Num runs: " + numRuns + " / Max threads: " + maxThreads
+                + " / Num cores: " + Runtime.getRuntime().availableProcessors());
+
+        SnowflakeIdGenerator idGenerator = SnowflakeIdGenerator.getInstance(1);
+        SnowflakeIdGenerator stripedIdGenerator = StripedSnowflakeIdGenerator.getInstance(2);
+        // warm up
+        runTest(idGenerator, numRuns, 1, false);
+        runTest(idGenerator, numRuns, 1, true);
+        runTest(stripedIdGenerator, numRuns, 1, false);
+
+        for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+            double lockFree = runTest(idGenerator, numRuns, numThreads, false);
+            double serialized = runTest(idGenerator, numRuns, numThreads, true);
+            double striped = runTest(stripedIdGenerator, numRuns, numThreads, false);
+            System.out.println(String.format(
+                    "[Snowflake] threads: %3d\tlock-free: %,12.0f ops/sec\tsynchronized: %,12.0f ops/sec\tstriped: %,12.0f ops/sec",
+                    numThreads, lockFree, serialized, striped));
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.appleframework.id;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import com.appleframework.id.exception.IdException;
 
@@ -79,9 +88,20 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
      */
     @Override
 	public long nextId(final String namespace) {
+		return reserveIds(namespace, 1);
+	}
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 1.0.0
+     */
+    @Override
+	public long reserveIds(final String namespace, final int count) {
+		checkCount(count);
 		if (redisTemplate != null) {
 			try {
-				return redisTemplate.opsForValue().increment(namespace, 1);
+				return redisTemplate.opsForValue().increment(namespace, count);
 			} catch (Exception e) {
 				throw new IdException.OperationFailedException(e);
 			}
@@ -90,6 +110,47 @@ public class RedisIdGenerator extends SerialIdGenerator implements IdentityGener
 		}
 	}
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * All namespaces are served in one pipelined round trip of {@code INCRBY}
+     * commands.
+     * </p>
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public Map<String, Long> reserveIds(final Map<String, Integer> counts) {
+        final SortedMap<String, Integer> sorted = sortedCounts(counts);
+        if (redisTemplate == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            final RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate
+                    .getKeySerializer();
+            List<Object> lasts = redisTemplate.executePipelined(new RedisCallback<Object>() {
+                @Override
+                public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                    for (Map.Entry<String, Integer> entry : sorted.entrySet()) {
+                        connection.incrBy(keySerializer.serialize(entry.getKey()), entry
+                                .getValue().longValue());
+                    }
+                    return null;
+                }
+            });
+            Map<String, Long> result = new LinkedHashMap<String, Long>();
+            int i = 0;
+            for (String namespace : sorted.keySet()) {
+                result.put(namespace, ((Number) lasts.get(i++)).longValue());
+            }
+            return result;
+        } catch (Exception e) {
+            throw new IdException.OperationFailedException(e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,81 @@
+package com.appleframework.id;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import redis.embedded.RedisServer;
+
+/**
+ * Test case for {@link RedisIdGenerator#reserveIds(Map)}, against an embedded
+ * Redis server.
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestRedisIdGeneratorReserveIds extends TestCase {
+
+    private final static int REDIS_PORT = 16379;
+    private RedisServer redisServer;
+    private JedisConnectionFactory connectionFactory;
+    private RedisIdGenerator idGenerator;
+
+    public static Test suite() {
+        return new TestSuite(TestRedisIdGeneratorReserveIds.class);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Before
+    public void setUp() throws Exception {
+        redisServer = RedisServer.builder().port(REDIS_PORT).setting("daemonize no")
+                .setting("save \"\"").build();
+        redisServer.start();
+        connectionFactory = new JedisConnectionFactory();
+        connectionFactory.setHostName("localhost");
+        connectionFactory.setPort(REDIS_PORT);
+        connectionFactory.afterPropertiesSet();
+        RedisTemplate<String, Long> redisTemplate = new RedisTemplate<String, Long>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setValueSerializer(new GenericToStringSerializer<Long>(Long.class));
+        redisTemplate.afterPropertiesSet();
+        idGenerator = new RedisIdGenerator().setRedisTemplate(redisTemplate).init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        idGenerator.destroy();
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @org.junit.Test
+    public void test1() throws Exception {
+        assertEquals(1, idGenerator.nextId("order"));
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("order_item", 3);
+        counts.put("order", 1);
+        counts.put("invoice", 2);
+        Map<String, Long> result = idGenerator.reserveIds(counts);
+        assertEquals(Arrays.asList("invoice", "order", "order_item"), new ArrayList<String>(
+                result.keySet()));
+        assertEquals(2, result.get("invoice").longValue());
+        assertEquals(2, result.get("order").longValue());
+        assertEquals(3, result.get("order_item").longValue());
+        result = idGenerator.reserveIds(counts);
+        assertEquals(4, result.get("invoice").longValue());
+        assertEquals(3, result.get("order").longValue());
+        assertEquals(6, result.get("order_item").longValue());
+        assertEquals(6, idGenerator.currentId("order_item"));
+        assertEquals(7, idGenerator.nextId("order_item"));
+    }
+}
@@ -1,8 +1,10 @@
 package com.appleframework.id;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
@@ -12,6 +14,17 @@ import org.apache.curator.framework.recipes.atomic.DistributedAtomicLong;
 import org.apache.curator.framework.recipes.atomic.PromotedToLock;
 import org.apache.curator.retry.BoundedExponentialBackoffRetry;
 import org.apache.curator.retry.RetryNTimes;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+
+import com.appleframework.id.exception.IdException;
+import com.appleframework.id.zookeeper.NamespacePermits;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * This id generator utilizes Zookeeper (http://zookeeper.apache.org/) to
@@ -22,6 +35,24 @@ import org.apache.curator.retry.RetryNTimes;
  * Zookeeper).
  * </p>
  * 
+ * <p>
+ * The {@link DistributedAtomicLong} of a namespace, with its paths and retry
+ * policies, is prepared once and kept in a bounded cache (see
+ * {@link #setMaxCachedNamespaces(int)}). Concurrent updates are limited per
+ * namespace (see {@link #setConcurrency(int)}), so a slow namespace does not
+ * stall the others.
+ * </p>
+ * 
+ * <p>
+ * Block mode (see {@link #setBlockSize(int)}): ids are reserved from Zookeeper
+ * a block at a time, with a single versioned {@code setData} (compare and set,
+ * retried on version conflict) instead of a {@link DistributedAtomicLong}
+ * update per id. Blocks are then handed out locally. The znode keeps the 8-byte
+ * format of {@link DistributedAtomicLong}, so both modes can share namespaces.
+ * As with {@link SegmentIdGenerator}, ids are then unique but not serial
+ * across nodes.
+ * </p>
+ * 
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 0.1.0
  */
@@ -50,10 +81,32 @@ public class ZookeeperIdGenerator extends SerialIdGenerator implements IdentityG
         }
     }
 
+    /**
+     * Distributed counter of a namespace.
+     */
+    private static class Counter {
+        private final String pathId;
+        private final DistributedAtomicLong dal;
+        /* block mode: ids (blockNext, blockMax] are reserved, guarded by this */
+        private long blockNext, blockMax;
+
+        public Counter(String pathId, DistributedAtomicLong dal) {
+            this.pathId = pathId;
+            this.dal = dal;
+        }
+    }
+
+    public final static int DEFAULT_MAX_CACHED_NAMESPACES = 1000;
+
     private CuratorFramework curatorFramework;
     private String zkConnString = "localhost:2181";
-    private Semaphore semaphore;
     private int concurrency = 4;
+    private int maxCachedNamespaces = DEFAULT_MAX_CACHED_NAMESPACES;
+    private int blockSize = 1;
+    private final LongAdder numBlockReservations = new LongAdder(), numCasConflicts = new LongAdder();
+    private RetryPolicy retryPolicyMutex, retryPolicyOptimistic;
+    private LoadingCache<String, Counter> counters;
+    private NamespacePermits permits;
 
     public String getZookeeperConnString() {
         return zkConnString;
@@ -68,6 +121,13 @@ public class ZookeeperIdGenerator extends SerialIdGenerator implements IdentityG
         return concurrency;
     }
 
+    /**
+     * Maximum number of in-flight operations per namespace; namespaces do not
+     * wait for each other. Must be set before {@link #init()}.
+     * 
+     * @param concurrency
+     * @return
+     */
     public ZookeeperIdGenerator setConcurrency(int concurrency) {
         this.concurrency = concurrency;
         if (this.concurrency < 1) {
@@ -76,20 +136,102 @@ public class ZookeeperIdGenerator extends SerialIdGenerator implements IdentityG
         return this;
     }
 
+    public int getMaxCachedNamespaces() {
+        return maxCachedNamespaces;
+    }
+
+    /**
+     * Maximum number of namespaces whose counters are kept prepared; the least
+     * recently used ones are evicted and re-created on demand. Must be set
+     * before {@link #init()}.
+     * 
+     * @param maxCachedNamespaces
+     * @return
+     * @since 1.0.0
+     */
+    public ZookeeperIdGenerator setMaxCachedNamespaces(int maxCachedNamespaces) {
+        this.maxCachedNamespaces = maxCachedNamespaces;
+        if (this.maxCachedNamespaces < 1) {
+            this.maxCachedNamespaces = 1;
+        }
+        return this;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Number of ids reserved from Zookeeper at a time. A value greater than 1
+     * enables block mode; 1 (default) updates Zookeeper for every id.
+     * 
+     * @param blockSize
+     * @return
+     * @since 1.0.0
+     */
+    public ZookeeperIdGenerator setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+        if (this.blockSize < 1) {
+            this.blockSize = 1;
+        }
+        return this;
+    }
+
+    /**
+     * Number of blocks reserved from Zookeeper (block mode).
+     * 
+     * @return
+     * @since 1.0.0
+     */
+    public long getNumBlockReservations() {
+        return numBlockReservations.sum();
+    }
+
+    /**
+     * Number of block reservations retried because another node updated the
+     * counter first (block mode).
+     * 
+     * @return
+     * @since 1.0.0
+     */
+    public long getNumCasConflicts() {
+        return numCasConflicts.sum();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public ZookeeperIdGenerator init() {
         super.init();
-        semaphore = new Semaphore(concurrency, true);
         RetryPolicy retryPolicy = new RetryNTimes(1, 2000);
         curatorFramework = CuratorFrameworkFactory.newClient(zkConnString, 3600000, 3000, retryPolicy);
         curatorFramework.start();
+        // retry policies are stateless, shared by all counters
+        retryPolicyMutex = new BoundedExponentialBackoffRetry(10, 1000, 5);
+        retryPolicyOptimistic = new RetryNTimes(3, 100);
+        // permits outlive evicted counters while checked out
+        final NamespacePermits namespacePermits = new NamespacePermits(concurrency);
+        permits = namespacePermits;
+        counters = CacheBuilder.newBuilder().maximumSize(maxCachedNamespaces)
+                .removalListener(new RemovalListener<String, Counter>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Counter> notification) {
+                        namespacePermits.evict(notification.getKey());
+                    }
+                }).build(new CacheLoader<String, Counter>() {
+                    @Override
+                    public Counter load(String namespace) {
+                        return createCounter(namespace);
+                    }
+                });
         return this;
     }
 
     public void destroy() {
+        if (counters != null) {
+            counters.invalidateAll();
+        }
         try {
             if (curatorFramework != null) {
                 curatorFramework.close();
@@ -114,22 +256,55 @@ public class ZookeeperIdGenerator extends SerialIdGenerator implements IdentityG
         return new String[] { pathId, pathLock };
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public long nextId(final String namespace) {
+    private Counter createCounter(final String namespace) {
         final String[] paths = calcPathIdAndPathLock(namespace);
         final String pathId = paths[0];
         final String pathLock = paths[1];
 
-        RetryPolicy retryPolicyMutex = new BoundedExponentialBackoffRetry(10, 1000, 5);
         PromotedToLock promotedToLock = PromotedToLock.builder().retryPolicy(retryPolicyMutex).lockPath(pathLock).build();
-        RetryPolicy retryPolicyOptimistic = new RetryNTimes(3, 100);
         DistributedAtomicLong dal = new DistributedAtomicLong(curatorFramework, pathId, retryPolicyOptimistic, promotedToLock);
-        semaphore.acquireUninterruptibly();
+        return new Counter(pathId, dal);
+    }
+
+    /**
+     * Gets the (cached) counter of a namespace.
+     * 
+     * @param namespace
+     * @return
+     * @since 1.0.0
+     */
+    private Counter counter(final String namespace) {
         try {
-            AtomicValue<Long> value = dal.increment();
+            return counters.getUnchecked(namespace);
+        } catch (UncheckedExecutionException e) {
+            throw new IdException.OperationFailedException(e.getCause());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextId(final String namespace) {
+        return reserveIds(namespace, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 1.0.0
+     */
+    @Override
+    public long reserveIds(final String namespace, final int count) {
+        checkCount(count);
+        final Counter counter = counter(namespace);
+        if (blockSize > 1) {
+            return reserveFromBlock(counter, count);
+        }
+        final DistributedAtomicLong dal = counter.dal;
+        final Semaphore semaphore = permits.acquire(namespace);
+        try {
+            AtomicValue<Long> value = dal.add((long) count);
             if (value != null && value.succeeded()) {
                 return value.postValue();
             }
@@ -137,23 +312,91 @@ public class ZookeeperIdGenerator extends SerialIdGenerator implements IdentityG
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         } finally {
-            semaphore.release();
+            permits.release(semaphore);
+        }
+    }
+
+    private static byte[] toBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static long fromBytes(byte[] data) {
+        return data != null && data.length == 8 ? ByteBuffer.wrap(data).getLong() : 0;
+    }
+
+    /**
+     * Adds {@code delta} to the counter with a versioned write, retrying on
+     * version conflict.
+     * 
+     * @param pathId
+     * @param delta
+     * @return the new value
+     * @throws Exception
+     */
+    private long compareAndAdd(final String pathId, final long delta) throws Exception {
+        Stat stat = new Stat();
+        for (;;) {
+            byte[] data;
+            try {
+                data = curatorFramework.getData().storingStatIn(stat).forPath(pathId);
+            } catch (KeeperException.NoNodeException e) {
+                try {
+                    curatorFramework.create().creatingParentsIfNeeded().forPath(pathId,
+                            toBytes(delta));
+                    return delta;
+                } catch (KeeperException.NodeExistsException e1) {
+                    // created concurrently
+                    numCasConflicts.increment();
+                    continue;
+                }
+            }
+            long value = fromBytes(data) + delta;
+            try {
+                curatorFramework.setData().withVersion(stat.getVersion()).forPath(pathId,
+                        toBytes(value));
+                return value;
+            } catch (KeeperException.BadVersionException e) {
+                numCasConflicts.increment();
+            }
+        }
+    }
+
+    /**
+     * Hands out {@code count} ids from the local block of a namespace,
+     * reserving a new block (of at least {@code count} ids) when the current
+     * one runs out.
+     * 
+     * @param counter
+     * @param count
+     * @return the last of the reserved ids
+     */
+    private long reserveFromBlock(final Counter counter, final int count) {
+        try {
+            synchronized (counter) {
+                if (counter.blockMax - counter.blockNext < count) {
+                    long size = Math.max(blockSize, count);
+                    numBlockReservations.increment();
+                    counter.blockMax = compareAndAdd(counter.pathId, size);
+                    counter.blockNext = counter.blockMax - size;
+                }
+                counter.blockNext += count;
+                return counter.blockNext;
+            }
+        } catch (Exception e) {
+            throw new IdException.OperationFailedException(e);
         }
     }
 
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * In block mode, this is the highest id reserved by any node.
+     * </p>
      */
     @Override
     public long currentId(final String namespace) {
-        final String[] paths = calcPathIdAndPathLock(namespace);
-        final String pathId = paths[0];
-        final String pathLock = paths[1];
-
-        RetryPolicy retryPolicyMutex = new BoundedExponentialBackoffRetry(10, 1000, 5);
-        PromotedToLock promotedToLock = PromotedToLock.builder().retryPolicy(retryPolicyMutex).lockPath(pathLock).build();
-        RetryPolicy retryPolicyOptimistic = new RetryNTimes(3, 100);
-        DistributedAtomicLong dal = new DistributedAtomicLong(curatorFramework, pathId, retryPolicyOptimistic, promotedToLock);
+        final DistributedAtomicLong dal = counter(namespace).dal;
         try {
             AtomicValue<Long> value = dal.get();
             if (value != null && value.succeeded()) {
@@ -169,26 +412,29 @@ public class ZookeeperIdGenerator extends SerialIdGenerator implements IdentityG
     /**
      * {@inheritDoc}
      * 
+     * <p>
+     * In block mode, only the local block is dropped: other nodes hand out the
+     * rest of their blocks first.
+     * </p>
+     * 
      * @since 0.4.0
      */
     @Override
     public boolean setValue(final String namespace, final long value) {
-        final String[] paths = calcPathIdAndPathLock(namespace);
-        final String pathId = paths[0];
-        final String pathLock = paths[1];
-
-        RetryPolicy retryPolicyMutex = new BoundedExponentialBackoffRetry(10, 1000, 5);
-        PromotedToLock promotedToLock = PromotedToLock.builder().retryPolicy(retryPolicyMutex).lockPath(pathLock).build();
-        RetryPolicy retryPolicyOptimistic = new RetryNTimes(3, 100);
-        DistributedAtomicLong dal = new DistributedAtomicLong(curatorFramework, pathId, retryPolicyOptimistic, promotedToLock);
-        semaphore.acquireUninterruptibly();
+        final Counter counter = counter(namespace);
+        final DistributedAtomicLong dal = counter.dal;
+        final Semaphore semaphore = permits.acquire(namespace);
         try {
             dal.forceSet(value);
+            synchronized (counter) {
+                // drop the local block
+                counter.blockNext = counter.blockMax = 0;
+            }
             return true;
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         } finally {
-            semaphore.release();
+            permits.release(semaphore);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.appleframework.id.zookeeper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of in-flight operations per namespace.
+ *
+ * <p>
+ * Each namespace has its own {@link Semaphore}, so a busy namespace never
+ * takes permits of another one. A semaphore is created on demand and dropped
+ * by {@link #evict(String)} only while none of its permits are checked out,
+ * so dropping it never lets more than {@link #getConcurrency()} operations
+ * run at once.
+ * </p>
+ *
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class NamespacePermits {
+
+    private final int concurrency;
+    private final ConcurrentMap<String, Semaphore> semaphores = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * @param concurrency
+     *            permits per namespace
+     */
+    public NamespacePermits(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Gets the number of namespaces holding a semaphore.
+     *
+     * @return
+     */
+    public int size() {
+        return semaphores.size();
+    }
+
+    private Semaphore semaphore(final String namespace) {
+        Semaphore semaphore = semaphores.get(namespace);
+        if (semaphore == null) {
+            Semaphore newSemaphore = new Semaphore(concurrency);
+            semaphore = semaphores.putIfAbsent(namespace, newSemaphore);
+            if (semaphore == null) {
+                semaphore = newSemaphore;
+            }
+        }
+        return semaphore;
+    }
+
+    /**
+     * Acquires a permit of a namespace, waiting for one if needed.
+     *
+     * @param namespace
+     * @return the semaphore to pass to {@link #release(Semaphore)}
+     */
+    public Semaphore acquire(final String namespace) {
+        for (;;) {
+            Semaphore semaphore = semaphore(namespace);
+            semaphore.acquireUninterruptibly();
+            if (semaphores.get(namespace) == semaphore) {
+                return semaphore;
+            }
+            // dropped while waiting
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Acquires a permit of a namespace, waiting at most {@code timeout}.
+     *
+     * @param namespace
+     * @param timeout
+     * @param unit
+     * @return the semaphore to pass to {@link #release(Semaphore)},
+     *         {@code null} if no permit was available in time
+     * @throws InterruptedException
+     */
+    public Semaphore tryAcquire(final String namespace, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (;;) {
+            Semaphore semaphore = semaphore(namespace);
+            if (!semaphore.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return null;
+            }
+            if (semaphores.get(namespace) == semaphore) {
+                return semaphore;
+            }
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Releases a permit obtained from {@link #acquire(String)}.
+     *
+     * @param semaphore
+     */
+    public void release(final Semaphore semaphore) {
+        semaphore.release();
+    }
+
+    /**
+     * Drops the semaphore of a namespace if none of its permits are checked
+     * out; otherwise keeps it.
+     *
+     * @param namespace
+     * @return {@code true} if dropped
+     */
+    public boolean evict(final String namespace) {
+        Semaphore semaphore = semaphores.get(namespace);
+        if (semaphore == null || !semaphore.tryAcquire(concurrency)) {
+            return false;
+        }
+        // all permits are held here: nobody can be using the semaphore
+        semaphores.remove(namespace, semaphore);
+        semaphore.release(concurrency);
+        return true;
+    }
+}
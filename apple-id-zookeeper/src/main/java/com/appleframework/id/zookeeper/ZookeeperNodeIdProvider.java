@@ -0,0 +1,494 @@
+package com.appleframework.id.zookeeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appleframework.id.NodeIdProvider;
+import com.appleframework.id.exception.IdException;
+
+/**
+ * Node id leased from Zookeeper (http://zookeeper.apache.org/).
+ *
+ * <p>
+ * Node id {@code n} is held by the ephemeral znode {@code <root>/n}: the lowest
+ * free id in {@code [0, 2^bits)} is claimed, and released when the process
+ * stops or its Zookeeper session expires.
+ * </p>
+ *
+ * <p>
+ * While an id is held, the current time is recorded every
+ * {@link #getReportIntervalMs()} in the persistent znode
+ * {@code <root>-timestamps/n}; the znode is only written once the time has
+ * moved {@link #getReportStepMs()} past the recorded one, to bound the write
+ * load on Zookeeper. A process claiming id {@code n} later refuses it if its
+ * clock is behind that timestamp, since Snowflake ids generated with it could
+ * collide with ids already issued; since the previous holder may have run up
+ * to one step past its last record, it also waits until its clock is a step
+ * ahead of it.
+ * </p>
+ *
+ * <p>
+ * If the Zookeeper session expires, the id may be claimed by another process
+ * before this one reconnects. The lease is then given up: see
+ * {@link #setLeaseListener(LeaseListener)}, and the next call to
+ * {@link #getNodeId()} claims a new id.
+ * </p>
+ *
+ * <p>
+ * Optionally, the claimed id is saved to a local file (see
+ * {@link #setCacheFile(File)}) and tried first on restart, so a process keeps
+ * its id when it is still free.
+ * </p>
+ *
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class ZookeeperNodeIdProvider implements NodeIdProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZookeeperNodeIdProvider.class);
+
+    /**
+     * Notified when the claimed node id has been taken by another process
+     * (after this process' session expired); ids must no longer be generated
+     * with it.
+     */
+    public interface LeaseListener {
+        public void leaseLost(long nodeId);
+    }
+
+    public final static String DEFAULT_ROOT = "/apple-id/nodes";
+    public final static int DEFAULT_BITS = 10;
+    public final static long DEFAULT_REPORT_INTERVAL_MS = 3000;
+    public final static long DEFAULT_REPORT_STEP_MS = 3000;
+
+    private CuratorFramework curatorFramework;
+    private boolean ownCuratorFramework = false;
+    private String zkConnString = "localhost:2181";
+    private int sessionTimeoutMs = 30000;
+    private String root = DEFAULT_ROOT;
+    private int bits = DEFAULT_BITS;
+    private volatile long nodeId = -1;
+    private File cacheFile;
+    private long reportIntervalMs = DEFAULT_REPORT_INTERVAL_MS;
+    private long reportStepMs = DEFAULT_REPORT_STEP_MS;
+    private final AtomicLong lastTimestamp = new AtomicLong(-1);
+    private final Object reportLock = new Object();
+    private long reportedTimestamp = -1;
+    private ScheduledExecutorService reporter;
+    private LeaseListener leaseListener;
+
+    public String getZookeeperConnString() {
+        return zkConnString;
+    }
+
+    public ZookeeperNodeIdProvider setZookeeperConnString(String zkConnString) {
+        this.zkConnString = zkConnString;
+        return this;
+    }
+
+    public CuratorFramework getCuratorFramework() {
+        return curatorFramework;
+    }
+
+    /**
+     * Uses an existing (started) {@link CuratorFramework} instead of
+     * connecting to {@link #getZookeeperConnString()}.
+     *
+     * @param curatorFramework
+     * @return
+     */
+    public ZookeeperNodeIdProvider setCuratorFramework(CuratorFramework curatorFramework) {
+        this.curatorFramework = curatorFramework;
+        return this;
+    }
+
+    public int getSessionTimeoutMs() {
+        return sessionTimeoutMs;
+    }
+
+    public ZookeeperNodeIdProvider setSessionTimeoutMs(int sessionTimeoutMs) {
+        this.sessionTimeoutMs = sessionTimeoutMs;
+        return this;
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    public ZookeeperNodeIdProvider setRoot(String root) {
+        this.root = "/" + root.replaceAll("^\\/+", "").replaceAll("\\/+$", "");
+        return this;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public ZookeeperNodeIdProvider setBits(int bits) {
+        this.bits = bits;
+        return this;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Local file remembering the claimed id across restarts.
+     *
+     * @param cacheFile
+     * @return
+     */
+    public ZookeeperNodeIdProvider setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+        return this;
+    }
+
+    public long getReportIntervalMs() {
+        return reportIntervalMs;
+    }
+
+    public ZookeeperNodeIdProvider setReportIntervalMs(long reportIntervalMs) {
+        this.reportIntervalMs = reportIntervalMs;
+        return this;
+    }
+
+    public long getReportStepMs() {
+        return reportStepMs;
+    }
+
+    /**
+     * Minimum amount (milliseconds) a timestamp must be ahead of the recorded
+     * one to be written to Zookeeper.
+     *
+     * @param reportStepMs
+     * @return
+     */
+    public ZookeeperNodeIdProvider setReportStepMs(long reportStepMs) {
+        this.reportStepMs = Math.max(0, reportStepMs);
+        return this;
+    }
+
+    /**
+     * Gets the last timestamp recorded for the claimed id, by this process or
+     * a previous holder.
+     *
+     * @return UNIX timestamp (milliseconds), negative value if none
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp.get();
+    }
+
+    public LeaseListener getLeaseListener() {
+        return leaseListener;
+    }
+
+    public ZookeeperNodeIdProvider setLeaseListener(LeaseListener leaseListener) {
+        this.leaseListener = leaseListener;
+        return this;
+    }
+
+    public ZookeeperNodeIdProvider init() {
+        if (curatorFramework == null) {
+            RetryPolicy retryPolicy = new RetryNTimes(3, 1000);
+            curatorFramework = CuratorFrameworkFactory.newClient(zkConnString, sessionTimeoutMs,
+                    3000, retryPolicy);
+            curatorFramework.start();
+            ownCuratorFramework = true;
+        }
+        curatorFramework.getConnectionStateListenable().addListener(new ConnectionStateListener() {
+            @Override
+            public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                if (newState == ConnectionState.LOST) {
+                    logger.warn("Zookeeper session lost, node id [" + nodeId + "] may be released");
+                } else if (newState == ConnectionState.RECONNECTED) {
+                    reclaim();
+                }
+            }
+        });
+        return this;
+    }
+
+    public void destroy() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        try {
+            long id = nodeId;
+            if (id >= 0 && curatorFramework != null) {
+                reportTimestamp(System.currentTimeMillis(), true);
+                curatorFramework.delete().guaranteed().forPath(pathOf(id));
+            }
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        } finally {
+            nodeId = -1;
+            if (ownCuratorFramework && curatorFramework != null) {
+                curatorFramework.close();
+                curatorFramework = null;
+            }
+        }
+    }
+
+    private String pathOf(long id) {
+        return root + "/" + id;
+    }
+
+    private String timestampPathOf(long id) {
+        return root + "-timestamps/" + id;
+    }
+
+    /**
+     * Records a timestamp seen by the holder of the node id (e.g. of the last
+     * generated id). Timestamps less than {@link #getReportStepMs()} ahead of
+     * the recorded one are ignored.
+     *
+     * @param timestamp
+     *            UNIX timestamp (milliseconds)
+     */
+    public void reportTimestamp(long timestamp) {
+        reportTimestamp(timestamp, false);
+    }
+
+    private void reportTimestamp(long timestamp, boolean force) {
+        long id = nodeId;
+        if (id < 0) {
+            return;
+        }
+        for (;;) {
+            long last = lastTimestamp.get();
+            if (timestamp <= last || (!force && timestamp - last < reportStepMs)) {
+                return;
+            }
+            if (lastTimestamp.compareAndSet(last, timestamp)) {
+                break;
+            }
+        }
+        // writes are serialized, so the znode never moves backward
+        synchronized (reportLock) {
+            long value = lastTimestamp.get();
+            if (value <= reportedTimestamp) {
+                return;
+            }
+            try {
+                byte[] data = ByteBuffer.allocate(8).putLong(value).array();
+                String path = timestampPathOf(id);
+                try {
+                    curatorFramework.setData().forPath(path, data);
+                } catch (KeeperException.NoNodeException e) {
+                    curatorFramework.create().creatingParentsIfNeeded().forPath(path, data);
+                }
+                reportedTimestamp = value;
+            } catch (Exception e) {
+                logger.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private long readTimestamp(long id) throws Exception {
+        try {
+            byte[] data = curatorFramework.getData().forPath(timestampPathOf(id));
+            return data != null && data.length == 8 ? ByteBuffer.wrap(data).getLong() : -1;
+        } catch (KeeperException.NoNodeException e) {
+            return -1;
+        }
+    }
+
+    private long readCacheFile() {
+        if (cacheFile == null || !cacheFile.isFile()) {
+            return -1;
+        }
+        try {
+            String content = new String(Files.readAllBytes(cacheFile.toPath()),
+                    StandardCharsets.UTF_8);
+            return Long.parseLong(content.trim());
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Cannot read node id from " + cacheFile + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private void writeCacheFile(long id) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            File dir = cacheFile.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                dir.mkdirs();
+            }
+            Files.write(cacheFile.toPath(), String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Cannot write node id to " + cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the clock against the last timestamp recorded for a freshly
+     * claimed id, then starts recording timestamps.
+     */
+    private void onClaimed(long id) throws Exception {
+        long last = readTimestamp(id);
+        long now = System.currentTimeMillis();
+        if (now < last) {
+            curatorFramework.delete().guaranteed().forPath(pathOf(id));
+            throw new IdException.OperationFailedException("Clock is behind by "
+                    + (last - now) + " ms for node id [" + id + "], refusing to start");
+        }
+        if (last >= 0 && now < last + reportStepMs) {
+            // the previous holder may have run until last + reportStepMs
+            Thread.sleep(last + reportStepMs - now);
+            now = System.currentTimeMillis();
+        }
+        nodeId = id;
+        lastTimestamp.set(last);
+        synchronized (reportLock) {
+            reportedTimestamp = last;
+        }
+        reportTimestamp(now, true);
+        writeCacheFile(id);
+        reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ZookeeperNodeIdProvider-" + id);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        reporter.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reportTimestamp(System.currentTimeMillis());
+            }
+        }, reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Re-creates the lease node after the session has been re-established,
+     * and gives the id up if another session holds it.
+     */
+    synchronized private void reclaim() {
+        long id = nodeId;
+        if (id < 0) {
+            return;
+        }
+        try {
+            for (;;) {
+                try {
+                    curatorFramework.create().creatingParentsIfNeeded()
+                            .withMode(CreateMode.EPHEMERAL).forPath(pathOf(id));
+                    return;
+                } catch (KeeperException.NodeExistsException e) {
+                    // still held by this session, or claimed by another process
+                }
+                Stat stat = curatorFramework.checkExists().forPath(pathOf(id));
+                if (stat == null) {
+                    // released meanwhile, try again
+                    continue;
+                }
+                long sessionId = curatorFramework.getZookeeperClient().getZooKeeper()
+                        .getSessionId();
+                if (stat.getEphemeralOwner() != sessionId) {
+                    leaseLost(id);
+                }
+                return;
+            }
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops using an id claimed by another process.
+     */
+    private void leaseLost(long id) {
+        logger.error("Node id [" + id + "] has been claimed by another process");
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        nodeId = -1;
+        lastTimestamp.set(-1);
+        LeaseListener listener = leaseListener;
+        if (listener != null) {
+            try {
+                listener.leaseLost(id);
+            } catch (Exception e) {
+                logger.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    synchronized public long getNodeId() {
+        if (nodeId >= 0) {
+            return nodeId;
+        }
+        try {
+            Set<String> taken = new HashSet<String>();
+            if (curatorFramework.checkExists().forPath(root) != null) {
+                List<String> children = curatorFramework.getChildren().forPath(root);
+                taken.addAll(children);
+            }
+            long maxNodeId = 1L << bits;
+            List<Long> candidates = new ArrayList<Long>();
+            long cachedId = readCacheFile();
+            if (cachedId >= 0 && cachedId < maxNodeId) {
+                // previously held by this process
+                candidates.add(cachedId);
+            }
+            for (long id = 0; id < maxNodeId; id++) {
+                if (id != cachedId) {
+                    candidates.add(id);
+                }
+            }
+            for (long id : candidates) {
+                if (taken.contains(String.valueOf(id))) {
+                    continue;
+                }
+                try {
+                    curatorFramework.create().creatingParentsIfNeeded()
+                            .withMode(CreateMode.EPHEMERAL).forPath(pathOf(id));
+                } catch (KeeperException.NodeExistsException e) {
+                    // claimed concurrently by another process
+                    continue;
+                }
+                onClaimed(id);
+                return id;
+            }
+            return -1;
+        } catch (IdException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IdException.OperationFailedException(e);
+        }
+    }
+}
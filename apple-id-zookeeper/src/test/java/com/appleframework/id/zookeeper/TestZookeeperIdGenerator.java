@@ -1,5 +1,9 @@
 package com.appleframework.id.zookeeper;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -57,4 +61,107 @@ public class TestZookeeperIdGenerator extends TestCase {
         assertEquals(1, idGenerator.nextId("default"));
         assertEquals(1, idGenerator.currentId("default"));
     }
+
+    @org.junit.Test
+    public void test4() throws Exception {
+        assertEquals(1, idGenerator.nextId("default"));
+        assertEquals(11, idGenerator.reserveIds("default", 10));
+        long[] ids = idGenerator.nextIds("default", 3);
+        assertEquals(3, ids.length);
+        assertEquals(12, ids[0]);
+        assertEquals(14, ids[2]);
+        assertEquals(14, idGenerator.currentId("default"));
+    }
+
+    @org.junit.Test
+    public void test5() throws Exception {
+        ZookeeperIdGenerator idGen = new ZookeeperIdGenerator();
+        idGen.setZookeeperConnString(zkServer.getConnectString()).setMaxCachedNamespaces(2).init();
+        try {
+            for (int i = 1; i <= 3; i++) {
+                for (int ns = 0; ns < 5; ns++) {
+                    // namespaces evicted from the cache keep their values
+                    assertEquals(i, idGen.nextId("ns" + ns));
+                }
+            }
+            assertEquals(3, idGen.currentId("/ns0/"));
+        } finally {
+            idGen.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void test6() throws Exception {
+        final ZookeeperIdGenerator idGen = new ZookeeperIdGenerator();
+        idGen.setZookeeperConnString(zkServer.getConnectString()).setConcurrency(1).init();
+        try {
+            final int numThreads = 8, numRuns = 25;
+            final CountDownLatch latch = new CountDownLatch(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                final String namespace = "ns" + (t % 4);
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < numRuns; i++) {
+                                idGen.nextId(namespace);
+                            }
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }).start();
+            }
+            latch.await();
+            for (int ns = 0; ns < 4; ns++) {
+                assertEquals(2 * numRuns, idGen.currentId("ns" + ns));
+            }
+        } finally {
+            idGen.destroy();
+        }
+
+        NamespacePermits permits = new NamespacePermits(1);
+        Semaphore hot = permits.acquire("hot");
+        // a namespace whose permits are all taken does not hold up others
+        Semaphore cold = permits.tryAcquire("cold", 100, TimeUnit.MILLISECONDS);
+        assertNotNull(cold);
+        assertNull(permits.tryAcquire("hot", 100, TimeUnit.MILLISECONDS));
+        // evicting a namespace with a permit checked out keeps its limit
+        assertFalse(permits.evict("hot"));
+        assertNull(permits.tryAcquire("hot", 100, TimeUnit.MILLISECONDS));
+        permits.release(hot);
+        permits.release(cold);
+        assertTrue(permits.evict("hot"));
+        assertTrue(permits.evict("cold"));
+        assertEquals(0, permits.size());
+        assertNotNull(permits.tryAcquire("hot", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @org.junit.Test
+    public void test7() throws Exception {
+        ZookeeperIdGenerator idGen1 = new ZookeeperIdGenerator();
+        idGen1.setZookeeperConnString(zkServer.getConnectString()).setBlockSize(100).init();
+        ZookeeperIdGenerator idGen2 = new ZookeeperIdGenerator();
+        idGen2.setZookeeperConnString(zkServer.getConnectString()).setBlockSize(100).init();
+        try {
+            // same 8-byte format as DistributedAtomicLong
+            assertEquals(5, idGenerator.reserveIds("block", 5));
+            assertEquals(6, idGen1.nextId("block"));
+            assertEquals(106, idGen2.nextId("block"));
+            for (int i = 7; i <= 105; i++) {
+                assertEquals(i, idGen1.nextId("block"));
+            }
+            assertEquals(206, idGen1.nextId("block"));
+            assertEquals(305, idGenerator.currentId("block"));
+            assertEquals(3, idGen1.getNumBlockReservations() + idGen2.getNumBlockReservations());
+
+            // larger than a block
+            assertEquals(655, idGen2.reserveIds("block", 350));
+            assertTrue(idGen2.setValue("block", 1000));
+            assertEquals(1001, idGen2.nextId("block"));
+        } finally {
+            idGen1.destroy();
+            idGen2.destroy();
+        }
+    }
 }
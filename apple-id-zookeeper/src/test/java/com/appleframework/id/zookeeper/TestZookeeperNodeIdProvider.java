@@ -0,0 +1,222 @@
+package com.appleframework.id.zookeeper;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.KillSession;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+
+import com.appleframework.id.exception.IdException;
+
+/**
+ * Test case for {@link ZookeeperNodeIdProvider}
+ * 
+ * @author cruise.xu
+ * @since 1.0.0
+ */
+public class TestZookeeperNodeIdProvider extends TestCase {
+
+    private TestingServer zkServer;
+
+    public static Test suite() {
+        return new TestSuite(TestZookeeperNodeIdProvider.class);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        zkServer = new TestingServer();
+        zkServer.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        zkServer.close();
+    }
+
+    private ZookeeperNodeIdProvider newProvider() {
+        return new ZookeeperNodeIdProvider().setZookeeperConnString(zkServer.getConnectString())
+                .setRoot("/test/nodes").setBits(2).init();
+    }
+
+    @org.junit.Test
+    public void test1() throws Exception {
+        ZookeeperNodeIdProvider provider1 = newProvider();
+        ZookeeperNodeIdProvider provider2 = newProvider();
+        try {
+            assertEquals(0, provider1.getNodeId());
+            assertEquals(0, provider1.getNodeId());
+            assertEquals(1, provider2.getNodeId());
+        } finally {
+            provider1.destroy();
+        }
+        ZookeeperNodeIdProvider provider3 = newProvider();
+        try {
+            assertEquals(0, provider3.getNodeId());
+        } finally {
+            provider2.destroy();
+            provider3.destroy();
+        }
+    }
+
+    @org.junit.Test
+    public void test2() throws Exception {
+        File cacheFile = File.createTempFile("node-id", ".txt");
+        cacheFile.delete();
+        try {
+            ZookeeperNodeIdProvider provider1 = newProvider();
+            ZookeeperNodeIdProvider provider2 = newProvider().setCacheFile(cacheFile);
+            assertEquals(0, provider1.getNodeId());
+            assertEquals(1, provider2.getNodeId());
+            assertTrue(provider2.getLastTimestamp() > 0);
+            provider1.destroy();
+            provider2.destroy();
+
+            // id 0 is free, but id 1 was held before
+            ZookeeperNodeIdProvider provider3 = newProvider().setCacheFile(cacheFile);
+            try {
+                assertEquals(1, provider3.getNodeId());
+            } finally {
+                provider3.destroy();
+            }
+        } finally {
+            cacheFile.delete();
+        }
+    }
+
+    @org.junit.Test
+    public void test3() throws Exception {
+        CuratorFramework curatorFramework = CuratorFrameworkFactory.newClient(
+                zkServer.getConnectString(), new RetryNTimes(1, 1000));
+        curatorFramework.start();
+        try {
+            long future = System.currentTimeMillis() + 60000;
+            curatorFramework.create().creatingParentsIfNeeded().forPath(
+                    "/test/nodes-timestamps/0", ByteBuffer.allocate(8).putLong(future).array());
+            ZookeeperNodeIdProvider provider = newProvider();
+            try {
+                provider.getNodeId();
+                fail("clock is behind");
+            } catch (IdException.OperationFailedException e) {
+                // expected
+            } finally {
+                provider.destroy();
+            }
+            assertNull(curatorFramework.checkExists().forPath("/test/nodes/0"));
+        } finally {
+            curatorFramework.close();
+        }
+    }
+
+    @org.junit.Test
+    public void test4() throws Exception {
+        final AtomicLong lost = new AtomicLong(-1);
+        CuratorFramework curatorFramework = CuratorFrameworkFactory.newClient(
+                zkServer.getConnectString(), 5000, 3000, new RetryNTimes(10, 100));
+        curatorFramework.start();
+        ZookeeperNodeIdProvider provider1 = new ZookeeperNodeIdProvider()
+                .setCuratorFramework(curatorFramework).setRoot("/test/nodes").setBits(2)
+                .setLeaseListener(new ZookeeperNodeIdProvider.LeaseListener() {
+                    @Override
+                    public void leaseLost(long nodeId) {
+                        lost.set(nodeId);
+                    }
+                }).init();
+        ZookeeperNodeIdProvider provider2 = newProvider();
+        try {
+            assertEquals(0, provider1.getNodeId());
+            // hold provider1 back from reclaiming until provider2 has taken id 0
+            synchronized (provider1) {
+                KillSession.kill(curatorFramework.getZookeeperClient().getZooKeeper());
+                CuratorFramework observer = CuratorFrameworkFactory.newClient(
+                        zkServer.getConnectString(), new RetryNTimes(1, 1000));
+                observer.start();
+                try {
+                    for (int i = 0; i < 100
+                            && observer.checkExists().forPath("/test/nodes/0") != null; i++) {
+                        Thread.sleep(100);
+                    }
+                } finally {
+                    observer.close();
+                }
+                assertEquals(0, provider2.getNodeId());
+            }
+            for (int i = 0; i < 100 && lost.get() < 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, lost.get());
+            // a new id is leased
+            assertEquals(1, provider1.getNodeId());
+            assertEquals(0, provider2.getNodeId());
+        } finally {
+            provider1.destroy();
+            provider2.destroy();
+            curatorFramework.close();
+        }
+    }
+
+    private long readTimestamp(CuratorFramework curatorFramework, String path) throws Exception {
+        return ByteBuffer.wrap(curatorFramework.getData().forPath(path)).getLong();
+    }
+
+    @org.junit.Test
+    public void test5() throws Exception {
+        CuratorFramework curatorFramework = CuratorFrameworkFactory.newClient(
+                zkServer.getConnectString(), new RetryNTimes(1, 1000));
+        curatorFramework.start();
+        try {
+            ZookeeperNodeIdProvider provider1 = new ZookeeperNodeIdProvider()
+                    .setZookeeperConnString(zkServer.getConnectString()).setRoot("/test/nodes")
+                    .setBits(2).setReportStepMs(60000).init();
+            long first;
+            try {
+                assertEquals(0, provider1.getNodeId());
+                first = provider1.getLastTimestamp();
+                assertEquals(first, readTimestamp(curatorFramework, "/test/nodes-timestamps/0"));
+
+                // within the step: not written
+                provider1.reportTimestamp(first + 1000);
+                assertEquals(first, provider1.getLastTimestamp());
+                assertEquals(first, readTimestamp(curatorFramework, "/test/nodes-timestamps/0"));
+
+                // a step ahead: written
+                provider1.reportTimestamp(first + 60000);
+                assertEquals(first + 60000, provider1.getLastTimestamp());
+                assertEquals(first + 60000,
+                        readTimestamp(curatorFramework, "/test/nodes-timestamps/0"));
+
+                // never backward
+                provider1.reportTimestamp(first + 120000);
+                provider1.reportTimestamp(first + 61000);
+                assertEquals(first + 120000, provider1.getLastTimestamp());
+            } finally {
+                provider1.destroy();
+            }
+
+            // the next holder waits a step past the recorded timestamp
+            curatorFramework.setData().forPath("/test/nodes-timestamps/0",
+                    ByteBuffer.allocate(8).putLong(System.currentTimeMillis()).array());
+            ZookeeperNodeIdProvider provider2 = new ZookeeperNodeIdProvider()
+                    .setZookeeperConnString(zkServer.getConnectString()).setRoot("/test/nodes")
+                    .setBits(2).setReportStepMs(1000).init();
+            try {
+                long last = readTimestamp(curatorFramework, "/test/nodes-timestamps/0");
+                assertEquals(0, provider2.getNodeId());
+                assertTrue(provider2.getLastTimestamp() >= last + 1000);
+            } finally {
+                provider2.destroy();
+            }
+        } finally {
+            curatorFramework.close();
+        }
+    }
+}
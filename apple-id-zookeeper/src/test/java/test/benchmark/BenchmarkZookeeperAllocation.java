@@ -0,0 +1,103 @@
+package test.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.atomic.DistributedAtomicLong;
+import org.apache.curator.framework.recipes.atomic.PromotedToLock;
+import org.apache.curator.retry.BoundedExponentialBackoffRetry;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+
+import com.appleframework.id.ZookeeperIdGenerator;
+
+/**
+ * Measures bytes allocated and CPU time spent per id by
+ * {@link ZookeeperIdGenerator} against an in-process {@link TestingServer}, and
+ * by the former path that prepared a new {@link DistributedAtomicLong} on each
+ * call. Also runs the generator in block mode.
+ */
+public class BenchmarkZookeeperAllocation {
+
+    private interface IdSupplier {
+        long nextId() throws Exception;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    private static void runTest(String name, IdSupplier supplier, int numRuns) throws Exception {
+        // warm up
+        for (int i = 0; i < numRuns; i++) {
+            supplier.nextId();
+        }
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threadMXBean().getThreadAllocatedBytes(threadId);
+        long cpuBefore = threadMXBean().getThreadCpuTime(threadId);
+        long timeBefore = System.nanoTime();
+        for (int i = 0; i < numRuns; i++) {
+            supplier.nextId();
+        }
+        long totalTime = System.nanoTime() - timeBefore;
+        long totalCpu = threadMXBean().getThreadCpuTime(threadId) - cpuBefore;
+        long totalBytes = threadMXBean().getThreadAllocatedBytes(threadId) - bytesBefore;
+        System.out.println(String.format("[%s] %,8.0f ids/sec\t%,8d bytes/id\t%,8d CPU ns/id",
+                name, numRuns / (totalTime / 1E9), totalBytes / numRuns, totalCpu / numRuns));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numRuns;
+        try {
+            numRuns = Integer.parseInt(System.getProperty("numRuns"));
+        } catch (Exception e) {
+            numRuns = 5000;
+        }
+
+        TestingServer zkServer = new TestingServer();
+        zkServer.start();
+        final CuratorFramework curatorFramework = CuratorFrameworkFactory.newClient(
+                zkServer.getConnectString(), new RetryNTimes(1, 2000));
+        curatorFramework.start();
+        final ZookeeperIdGenerator idGenerator = new ZookeeperIdGenerator();
+        idGenerator.setZookeeperConnString(zkServer.getConnectString()).init();
+        final ZookeeperIdGenerator blockIdGenerator = new ZookeeperIdGenerator();
+        blockIdGenerator.setZookeeperConnString(zkServer.getConnectString()).setBlockSize(1000)
+                .init();
+
+        runTest("Uncached", new IdSupplier() {
+            @Override
+            public long nextId() throws Exception {
+                String namespace = "uncached";
+                String pathId = "/" + namespace.replaceAll("^\\/+", "").replaceAll("\\/+$", "");
+                String pathLock = pathId + "/lock";
+                RetryPolicy retryPolicyMutex = new BoundedExponentialBackoffRetry(10, 1000, 5);
+                PromotedToLock promotedToLock = PromotedToLock.builder()
+                        .retryPolicy(retryPolicyMutex).lockPath(pathLock).build();
+                RetryPolicy retryPolicyOptimistic = new RetryNTimes(3, 100);
+                DistributedAtomicLong dal = new DistributedAtomicLong(curatorFramework, pathId,
+                        retryPolicyOptimistic, promotedToLock);
+                return dal.increment().postValue();
+            }
+        }, numRuns);
+        runTest("ZookeeperIdGenerator", new IdSupplier() {
+            @Override
+            public long nextId() {
+                return idGenerator.nextId("cached");
+            }
+        }, numRuns);
+        runTest("ZookeeperIdGenerator, block 1000", new IdSupplier() {
+            @Override
+            public long nextId() {
+                return blockIdGenerator.nextId("block");
+            }
+        }, numRuns);
+
+        blockIdGenerator.destroy();
+        idGenerator.destroy();
+        curatorFramework.close();
+        zkServer.close();
+    }
+}